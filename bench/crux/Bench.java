@@ -0,0 +1,125 @@
+package crux;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/* Inputs and timing shared by the benchmarks in bench/. Each benchmark is a
+ * main class, run from the project root once src and bench are compiled
+ * together:
+ *
+ *   javac -d out/bench $(find src bench -name '*.java')
+ *   java -cp out/bench crux.KeywordBench [dir]
+ *
+ * It times the code a change replaced (before) against what replaced it
+ * (after), on the .crx files in dir (tests by default) run one after another,
+ * and on a synthetic large input of its own. Where the tree no longer has the
+ * code replaced, the benchmark carries a small model of it, and says so.
+ */
+final class Bench {
+
+    private static final long WARMUP_NANOS = 1000000000;
+    private static final int RUNS = 10;
+    private static final long MIN_NANOS = 20000000; // per timed run
+
+    // The work timed. It returns something computed from the work, which is
+    // printed so that none of it can be optimized away.
+    interface Task {
+        long run() throws Exception;
+    }
+
+    private Bench() {
+    }
+
+    // The .crx files in args[0], or else in tests, one after another.
+    static char[] corpus(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : "tests");
+        String[] names = dir.list();
+        if (names == null)
+            throw new IOException("no directory " + dir);
+        Arrays.sort(names);
+        StringBuilder text = new StringBuilder();
+        for (String name : names) {
+            if (name.endsWith(".crx"))
+                text.append(read(new File(dir, name))).append('\n');
+        }
+        return chars(text);
+    }
+
+    static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+    }
+
+    static char[] chars(CharSequence text) {
+        char[] chars = new char[text.length()];
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = text.charAt(i);
+        return chars;
+    }
+
+    /* A valid program of the given number of functions, each calling the one
+     * before it, with declarations, arithmetic, comparisons, an if and a while
+     * in every body, and a comment line between functions.
+     */
+    static char[] program(int functions) {
+        StringBuilder text = new StringBuilder();
+        text.append("var total : int;\narray table : int[64];\n");
+        for (int i = 0; i < functions; i++) {
+            text.append("// f").append(i).append(" folds its arguments into total\n");
+            text.append("func f").append(i).append("(a : int, b : int) : int {\n");
+            text.append("    var x : int;\n    var done : bool;\n");
+            text.append("    let x = a * 3 + b - (a / 2) + table[").append(i % 64).append("];\n");
+            text.append("    let done = x > 10 and not (b == 4);\n");
+            text.append("    if done {\n");
+            if (i > 0)
+                text.append("        let x = x - ::f").append(i - 1).append("(x, b);\n");
+            else
+                text.append("        let x = x - 1;\n");
+            text.append("    } else {\n");
+            text.append("        while x < 100 {\n            let x = x + 7;\n        }\n");
+            text.append("    }\n");
+            text.append("    let total = total + x;\n");
+            text.append("    return x;\n}\n");
+        }
+        text.append("func main() : void {\n");
+        if (functions > 0)
+            text.append("    ::printInt(::f").append(functions - 1).append("(1, 2));\n");
+        text.append("}\n");
+        return chars(text);
+    }
+
+    static void heading(String input, char[] text) {
+        System.out.printf("%s, %d KB:%n", input, text.length / 1000);
+    }
+
+    // Runs task for WARMUP_NANOS, then RUNS more times, each repeating it
+    // until it has taken MIN_NANOS, and prints the best time the task took.
+    static long time(String label, Task task) throws Exception {
+        long result = 0;
+        long warmups = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        try {
+            do {
+                result = task.run();
+                warmups++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < WARMUP_NANOS);
+        } catch (StackOverflowError e) {
+            System.out.printf("  %-44s StackOverflowError%n", label);
+            return -1;
+        }
+        long repeats = Math.max(1, MIN_NANOS * warmups / elapsed);
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            start = System.nanoTime();
+            for (long r = 0; r < repeats; r++)
+                result = task.run();
+            best = Math.min(best, (System.nanoTime() - start) / repeats);
+        }
+        System.out.printf("  %-44s %10.3f ms  (%d)%n", label, best / 1e6, result);
+        return best;
+    }
+}
@@ -0,0 +1,95 @@
+package crux;
+
+/* Whitespace and comment skipping on comment-dense input (user-006). Before,
+ * scan() lexed a comment character by character and then called itself for
+ * the next token, a stack frame per comment line; a file ending in a comment
+ * never finished. The old Scanner is gone, so the change is timed on a model
+ * of just the trivia handling, first recursive as before and then looping as
+ * now, stepping over each run of other characters as one token. The Scanner
+ * itself, tokens and all, is timed after them.
+ */
+public class CommentBench {
+
+    public static void main(String[] args) throws Exception {
+        run("tests", Bench.corpus(args));
+        run("200k consecutive comment lines", comments(200000, 0));
+        run("a declaration every 50 comment lines", comments(200000, 50));
+    }
+
+    private static void run(String input, final char[] text) throws Exception {
+        Bench.heading(input, text);
+        Bench.time("before: recursive trivia skipping (model)", new Bench.Task() {
+            public long run() {
+                return modelTokens(text, true);
+            }
+        });
+        Bench.time("after:  iterative trivia skipping (model)", new Bench.Task() {
+            public long run() {
+                return modelTokens(text, false);
+            }
+        });
+        Bench.time("after:  Scanner", new Bench.Task() {
+            public long run() {
+                Scanner scanner = new Scanner(text);
+                long tokens = 0;
+                while (!scanner.next().is(Token.Kind.EOF))
+                    tokens++;
+                return tokens;
+            }
+        });
+    }
+
+    // The runs of characters between trivia in text.
+    private static long modelTokens(char[] text, boolean recursive) {
+        long tokens = 0;
+        int i = recursive ? skipRecursively(text, 0) : skipIteratively(text, 0);
+        while (i < text.length) {
+            while (i < text.length && !Character.isWhitespace(text[i]) && text[i] != '/')
+                i++;
+            if (i < text.length && text[i] == '/' && (i + 1 == text.length || text[i + 1] != '/'))
+                i++;
+            tokens++;
+            i = recursive ? skipRecursively(text, i) : skipIteratively(text, i);
+        }
+        return tokens;
+    }
+
+    // The old trivia handling: a character at a time, and a call deeper for
+    // each comment. Unlike the old Scanner it stops a comment at the end.
+    private static int skipRecursively(char[] text, int i) {
+        while (i < text.length && Character.isWhitespace(text[i]))
+            i++;
+        if (i + 1 < text.length && text[i] == '/' && text[i + 1] == '/') {
+            i += 2;
+            while (i < text.length && text[i] != '\n')
+                i++;
+            return skipRecursively(text, i);
+        }
+        return i;
+    }
+
+    // The same, looping over the comments as scan() does now.
+    private static int skipIteratively(char[] text, int i) {
+        while (true) {
+            while (i < text.length && Character.isWhitespace(text[i]))
+                i++;
+            if (i + 1 >= text.length || text[i] != '/' || text[i + 1] != '/')
+                return i;
+            i += 2;
+            while (i < text.length && text[i] != '\n')
+                i++;
+        }
+    }
+
+    // Lines of license and trace banner comments, with a variable declared
+    // after every declarationEvery of them, or never for 0.
+    static char[] comments(int lines, int declarationEvery) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 1; i <= lines; i++) {
+            text.append("// license banner line ").append(i).append(" trace: enter f").append(i).append('\n');
+            if (declarationEvery > 0 && i % declarationEvery == 0)
+                text.append("var v").append(i).append(" : int;\n");
+        }
+        return Bench.chars(text);
+    }
+}
@@ -0,0 +1,234 @@
+package crux;
+
+import java.util.Random;
+import java.util.Stack;
+
+/* Expression parsing (user-013). Before, expression0 descended through
+ * expression1, expression2 and expression3, a method and a FIRST-set probe
+ * each, for every operand; after, Parser.expression0 climbs precedences over
+ * an operator table. The old rules are gone, so before is a model of them
+ * that builds through the same ast.Command factories. Parser.expression0
+ * needs no symbol table for literals, so the inputs have no names: the
+ * expressions of tests/*.crx with names made literals, and generated ones.
+ */
+public class ExpressionBench {
+
+    public static void main(String[] args) throws Exception {
+        char[] tests = expressionsOf(Bench.corpus(args));
+        System.out.println("same trees: " + sameTrees(tests) + ", and on a sample of the generated: "
+                + sameTrees(generated(20000)));
+        run("expressions of tests", tests);
+        run("generated expressions", generated(4000000));
+    }
+
+    // Do the model and Parser.expression0 parse text alike? Printing the
+    // trees costs the square of their depth, so this is for small inputs.
+    private static boolean sameTrees(char[] text) {
+        TokenBuffer tokens = TokenBuffer.lex(text);
+        ast.PrettyPrinter before = new ast.PrettyPrinter();
+        new Levels(tokens).expression0().accept(before);
+        ast.PrettyPrinter after = new ast.PrettyPrinter();
+        new Parser(tokens).expression0().accept(after);
+        return before.toString().equals(after.toString());
+    }
+
+    private static void run(String input, char[] text) throws Exception {
+        Bench.heading(input, text);
+        final TokenBuffer tokens = TokenBuffer.lex(text);
+
+        Bench.time("before: expression0 to expression3 (model)", new Bench.Task() {
+            public long run() {
+                Levels levels = new Levels(tokens);
+                levels.expression0();
+                return levels.at;
+            }
+        });
+        Bench.time("after:  Parser.expression0", new Bench.Task() {
+            public long run() {
+                Parser parser = new Parser(tokens);
+                parser.expression0();
+                return parser.diagnostics().errorCount();
+            }
+        });
+    }
+
+    // The rules expression0 to expression3 as they were, over literals.
+    private static final class Levels {
+        final TokenBuffer tokens;
+        int at;
+        int depth; // as enterRule and exitRule kept it
+
+        Levels(TokenBuffer tokens) {
+            this.tokens = tokens;
+        }
+
+        boolean have(NonTerminal rule) {
+            return rule.firstContains(tokens.kind(at));
+        }
+
+        ast.Expression expression0() {
+            depth++;
+            ast.Expression leftSide = expression1();
+            if (have(NonTerminal.OP0)) {
+                int op = at++;
+                leftSide = binary(leftSide, op, expression1());
+            }
+            depth--;
+            return leftSide;
+        }
+
+        ast.Expression expression1() {
+            depth++;
+            ast.Expression leftSide = expression2();
+            while (have(NonTerminal.OP1)) {
+                int op = at++;
+                leftSide = binary(leftSide, op, expression2());
+            }
+            depth--;
+            return leftSide;
+        }
+
+        ast.Expression expression2() {
+            depth++;
+            ast.Expression leftSide = expression3();
+            while (have(NonTerminal.OP2)) {
+                int op = at++;
+                leftSide = binary(leftSide, op, expression3());
+            }
+            depth--;
+            return leftSide;
+        }
+
+        ast.Expression expression3() {
+            depth++;
+            ast.Expression expr;
+            int lineNum = tokens.lineNumber(at);
+            int charPos = tokens.charPosition(at);
+            if (tokens.is(at, Token.Kind.NOT)) {
+                at++;
+                expr = new ast.LogicalNot(lineNum, charPos, expression3());
+            } else if (tokens.is(at, Token.Kind.OPEN_PAREN)) {
+                at++;
+                expr = expression0();
+                at++; // ")"
+            } else {
+                expr = ast.Command.newLiteral(tokens.kind(at), tokens.lexeme(at), lineNum, charPos);
+                at++;
+            }
+            depth--;
+            return expr;
+        }
+
+        private ast.Expression binary(ast.Expression leftSide, int op, ast.Expression rightSide) {
+            return ast.Command.newExpression(leftSide, tokens.kind(op),
+                    tokens.lineNumber(op), tokens.charPosition(op), rightSide);
+        }
+    }
+
+    /* The expressions of a program, each parenthesized, as the operands of one
+     * sum. Names become the literal 7; a designator's indexes and a call's
+     * arguments become parenthesized operands of a sum in their place.
+     */
+    static char[] expressionsOf(char[] program) {
+        TokenBuffer tokens = TokenBuffer.lex(program);
+        StringBuilder text = new StringBuilder();
+        Stack<Boolean> open = new Stack<Boolean>(); // of each "(" and "[": is it a call's?
+        boolean inExpression = false;
+        boolean callNext = false;
+        for (int i = 0; i < tokens.size(); i++) {
+            Token.Kind kind = tokens.kind(i);
+            if (!inExpression) {
+                if (kind == Token.Kind.ASSIGN || kind == Token.Kind.RETURN || kind == Token.Kind.IF
+                        || kind == Token.Kind.WHILE || kind == Token.Kind.CALL) {
+                    text.append(text.length() == 0 ? "(" : " + (");
+                    inExpression = true;
+                    open.clear();
+                }
+                if (kind != Token.Kind.CALL)
+                    continue;
+            }
+            if (open.isEmpty() && (kind == Token.Kind.SEMICOLON || kind == Token.Kind.OPEN_BRACE)) {
+                text.append(")\n");
+                inExpression = false;
+                continue;
+            }
+            switch (kind) {
+            case IDENTIFIER:
+                if (!callNext)
+                    text.append(" 7");
+                break;
+            case CALL:
+                text.append(" 7");
+                callNext = true;
+                break;
+            case OPEN_PAREN:
+                if (callNext && tokens.is(i + 1, Token.Kind.CLOSE_PAREN)) {
+                    i++;
+                } else {
+                    text.append(callNext ? " + ((" : " (");
+                    open.push(callNext);
+                }
+                callNext = false;
+                break;
+            case CLOSE_PAREN:
+                text.append(open.pop() ? "))" : ")");
+                break;
+            case COMMA:
+                text.append(") + (");
+                break;
+            case OPEN_BRACKET:
+                text.append(" + (");
+                open.push(false);
+                break;
+            case CLOSE_BRACKET:
+                text.append(")");
+                open.pop();
+                break;
+            default:
+                text.append(' ').append(tokens.lexeme(i));
+            }
+        }
+        return Bench.chars(text);
+    }
+
+    // Random expressions over literals, up to four levels of parentheses deep,
+    // as the operands of one sum.
+    static char[] generated(int size) {
+        Random random = new Random(13);
+        StringBuilder text = new StringBuilder(size + 200);
+        text.append("0");
+        while (text.length() < size) {
+            text.append(" + (");
+            expression(random, text, 4);
+            text.append(")\n");
+        }
+        return Bench.chars(text);
+    }
+
+    private static final String[] OPERATORS = { "+", "-", "*", "/", "or", "and" };
+    private static final String[] COMPARISONS = { "<", ">", "<=", ">=", "==", "!=" };
+
+    private static void expression(Random random, StringBuilder text, int depth) {
+        int operands = 1 + random.nextInt(4);
+        for (int i = 0; i < operands; i++) {
+            if (i > 0)
+                text.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+            int pick = depth == 0 ? random.nextInt(3) : random.nextInt(5);
+            if (pick == 0)
+                text.append(random.nextInt(1000));
+            else if (pick == 1)
+                text.append(random.nextInt(100)).append('.').append(random.nextInt(100));
+            else if (pick == 2)
+                text.append(random.nextBoolean() ? "true" : "not false");
+            else {
+                text.append('(');
+                expression(random, text, depth - 1);
+                if (pick == 4) {
+                    text.append(' ').append(COMPARISONS[random.nextInt(COMPARISONS.length)]).append(' ');
+                    expression(random, text, depth - 1);
+                }
+                text.append(')');
+            }
+        }
+    }
+}
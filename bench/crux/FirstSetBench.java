@@ -0,0 +1,62 @@
+package crux;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/* FIRST-set membership (user-011). Before, each NonTerminal kept its FIRST set
+ * as a HashSet<Token.Kind>, hashed on every have(NonTerminal); after, it keeps
+ * a bit mask over Token.Kind ordinals. Both are asked about every token of the
+ * input against every NonTerminal, as the parser's probes do; the HashSets
+ * are rebuilt from the masks. The parser is then timed over the whole input.
+ */
+public class FirstSetBench {
+
+    public static void main(String[] args) throws Exception {
+        run("tests", Bench.corpus(args));
+        run("synthetic program of 20000 functions", Bench.program(20000));
+    }
+
+    private static void run(String input, char[] text) throws Exception {
+        Bench.heading(input, text);
+        final TokenBuffer tokens = TokenBuffer.lex(text);
+        final Token.Kind[] kinds = new Token.Kind[tokens.size()];
+        for (int i = 0; i < kinds.length; i++)
+            kinds[i] = tokens.kind(i);
+        final NonTerminal[] rules = NonTerminal.values();
+        final Set<?>[] sets = new Set<?>[rules.length];
+        for (int r = 0; r < rules.length; r++)
+            sets[r] = new HashSet<Token.Kind>(rules[r].firstSet());
+
+        Bench.time("before: HashSet FIRST sets", new Bench.Task() {
+            public long run() {
+                long hits = 0;
+                for (Token.Kind kind : kinds) {
+                    for (int r = 0; r < sets.length; r++) {
+                        if (sets[r].contains(kind))
+                            hits++;
+                    }
+                }
+                return hits;
+            }
+        });
+        Bench.time("after:  bit mask FIRST sets", new Bench.Task() {
+            public long run() {
+                long hits = 0;
+                for (Token.Kind kind : kinds) {
+                    for (int r = 0; r < rules.length; r++) {
+                        if (rules[r].firstContains(kind))
+                            hits++;
+                    }
+                }
+                return hits;
+            }
+        });
+        Bench.time("after:  Parser over the tokens", new Bench.Task() {
+            public long run() {
+                Parser parser = new Parser(tokens);
+                parser.parse();
+                return parser.diagnostics().errorCount();
+            }
+        });
+    }
+}
@@ -0,0 +1,123 @@
+package crux;
+
+import java.util.Random;
+
+/* Keyword and punctuation lookup (user-003). Before, the Scanner looped over
+ * Token.Kind.values(), which clones the array, and compared each word and
+ * each punctuation character with every kind. After, Token.Kind.keyword
+ * switches on length and first letter, and fromChar indexes a table. Both are
+ * timed over the words and punctuation of each input, then the whole Scanner.
+ */
+public class KeywordBench {
+
+    private static final String[] KEYWORDS = {
+        "let", "var", "while", "return", "if", "else", "and", "or", "not", "func", "array", "true", "false"
+    };
+
+    public static void main(String[] args) throws Exception {
+        run("tests", Bench.corpus(args));
+        run("identifier-heavy synthetic", identifiers(8000000));
+    }
+
+    private static void run(String input, final char[] text) throws Exception {
+        Bench.heading(input, text);
+        TokenBuffer tokens = TokenBuffer.lex(text);
+        int words = 0;
+        int marks = 0;
+        final int[] wordStart = new int[tokens.size()];
+        final int[] wordLength = new int[tokens.size()];
+        final char[] mark = new char[tokens.size()];
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.length(i) == 0)
+                continue;
+            char first = text[tokens.start(i)];
+            if (Character.isLetter(first) || first == '_') {
+                wordStart[words] = tokens.start(i);
+                wordLength[words++] = tokens.length(i);
+            } else if (tokens.length(i) == 1 && !Character.isDigit(first)) {
+                mark[marks++] = first;
+            }
+        }
+        final int wordCount = words;
+        final int markCount = marks;
+
+        Bench.time("before: words through Kind.values()", new Bench.Task() {
+            public long run() {
+                long keywords = 0;
+                for (int w = 0; w < wordCount; w++) {
+                    for (Token.Kind kind : Token.Kind.values()) {
+                        if (kind.matches(text, wordStart[w], wordLength[w])) {
+                            keywords++;
+                            break;
+                        }
+                    }
+                }
+                return keywords;
+            }
+        });
+        Bench.time("after:  words through Kind.keyword", new Bench.Task() {
+            public long run() {
+                long keywords = 0;
+                for (int w = 0; w < wordCount; w++) {
+                    if (Token.Kind.keyword(text, wordStart[w], wordLength[w]) != null)
+                        keywords++;
+                }
+                return keywords;
+            }
+        });
+        Bench.time("before: punctuation through Kind.values()", new Bench.Task() {
+            public long run() {
+                long found = 0;
+                for (int m = 0; m < markCount; m++) {
+                    for (Token.Kind kind : Token.Kind.values()) {
+                        if (kind.matches(mark[m])) {
+                            found += kind.ordinal();
+                            break;
+                        }
+                    }
+                }
+                return found;
+            }
+        });
+        Bench.time("after:  punctuation through Kind.fromChar", new Bench.Task() {
+            public long run() {
+                long found = 0;
+                for (int m = 0; m < markCount; m++) {
+                    Token.Kind kind = Token.Kind.fromChar(mark[m]);
+                    if (kind != null)
+                        found += kind.ordinal();
+                }
+                return found;
+            }
+        });
+        Bench.time("after:  Scanner, all tokens", new Bench.Task() {
+            public long run() {
+                Scanner scanner = new Scanner(text);
+                long count = 0;
+                while (!scanner.next().is(Token.Kind.EOF))
+                    count++;
+                return count;
+            }
+        });
+    }
+
+    // Lines of twelve words, a quarter of them keywords, some joined by '+'.
+    static char[] identifiers(int size) {
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder(size + 200);
+        while (text.length() < size) {
+            for (int i = 0; i < 12; i++) {
+                if (random.nextInt(4) == 0) {
+                    text.append(KEYWORDS[random.nextInt(KEYWORDS.length)]);
+                } else {
+                    int length = 3 + random.nextInt(12);
+                    for (int j = 0; j < length; j++)
+                        text.append((char) ('a' + random.nextInt(26)));
+                }
+                text.append(random.nextInt(3) == 0 ? " + " : " ");
+            }
+            text.append(";\n");
+        }
+        return Bench.chars(text);
+    }
+}
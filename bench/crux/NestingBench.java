@@ -0,0 +1,330 @@
+package crux;
+
+import ast.*;
+
+/* Deep nesting (user-018). Before, the parser and the tree visitors recursed
+ * once per level of nesting, so a deep enough program overflowed the Java
+ * stack; after, the parser keeps open blocks and expressions on a stack of its
+ * own, and TypeChecker, CodeGen and PrettyPrinter are driven by Walk. The old
+ * recursive parser is gone, so before is modelled by its traversal alone: a
+ * CommandVisitor counting nodes by calling accept on each child, against the
+ * same count kept by Walk. After is also timed end to end, through parse,
+ * check and codegen, on programs nesting each construct 1000 to 100000 deep.
+ * The number printed there is the first stage to fail, or 0.
+ */
+public class NestingBench {
+
+    private static final String[] KINDS = { "parens", "sum", "not", "call", "if", "while" };
+
+    public static void main(String[] args) throws Exception {
+        run("tests", Bench.corpus(args));
+        for (int depth = 1000; depth <= 100000; depth *= 10) {
+            for (String kind : KINDS)
+                run(kind + " nested " + depth + " deep", Bench.chars(program(kind, depth)));
+        }
+    }
+
+    private static void run(String input, final char[] text) throws Exception {
+        Bench.heading(input, text);
+        final Command tree = new Parser(TokenBuffer.lex(text)).parse();
+        Bench.time("before: recursive CommandVisitor (model)", new Bench.Task() {
+            public long run() {
+                RecursiveCount count = new RecursiveCount();
+                tree.accept(count);
+                return count.nodes;
+            }
+        });
+        Bench.time("after:  Walk.walk", new Bench.Task() {
+            public long run() {
+                WalkCount count = new WalkCount();
+                Walk.walk(tree, count);
+                return count.nodes;
+            }
+        });
+        // as Compiler does, each stage runs only if the one before it passed
+        Bench.time("after:  parse, check and codegen", new Bench.Task() {
+            public long run() {
+                Parser parser = new Parser(TokenBuffer.lex(text));
+                Command tree = parser.parse();
+                if (parser.hasError())
+                    return 1;
+                types.TypeChecker checker = new types.TypeChecker();
+                checker.check(tree);
+                if (checker.hasError())
+                    return 2;
+                mips.CodeGen codegen = new mips.CodeGen(checker);
+                codegen.generate(tree);
+                return codegen.hasError() ? 3 : 0;
+            }
+        });
+    }
+
+    // A function main nesting kind depth levels deep, and the f it calls.
+    static String program(String kind, int depth) {
+        StringBuilder text = new StringBuilder();
+        text.append("func f(a : int) : int {\n    return a;\n}\n");
+        text.append("func main() : void {\n    var x : int;\n    var y : bool;\n");
+        if (kind.equals("parens"))
+            text.append("    let x = ").append(repeat("(", depth)).append("1").append(repeat(")", depth)).append(";\n");
+        else if (kind.equals("sum"))
+            text.append("    let x = ").append(repeat("(1 + ", depth)).append("1").append(repeat(")", depth)).append(";\n");
+        else if (kind.equals("not"))
+            text.append("    let y = ").append(repeat("not ", depth)).append("true;\n");
+        else if (kind.equals("call"))
+            text.append("    let x = ").append(repeat("::f(", depth)).append("1").append(repeat(")", depth)).append(";\n");
+        else if (kind.equals("if"))
+            text.append(repeat("if true {\n", depth)).append("let x = 1;\n").append(repeat("} else {\n}\n", depth));
+        else if (kind.equals("while"))
+            text.append(repeat("while false {\n", depth)).append("let x = 1;\n").append(repeat("}\n", depth));
+        text.append("}\n");
+        return text.toString();
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder text = new StringBuilder(s.length() * times);
+        for (int i = 0; i < times; i++)
+            text.append(s);
+        return text.toString();
+    }
+
+    // Counts nodes the way the visitors did before Walk, one Java frame or
+    // more per level.
+    private static class RecursiveCount implements CommandVisitor {
+        long nodes;
+
+        public void visit(ExpressionList node) {
+            nodes++;
+            for (Expression e : node)
+                e.accept(this);
+        }
+
+        public void visit(DeclarationList node) {
+            nodes++;
+            for (Declaration d : node)
+                d.accept(this);
+        }
+
+        public void visit(StatementList node) {
+            nodes++;
+            for (Statement s : node)
+                s.accept(this);
+        }
+
+        public void visit(AddressOf node) {
+            nodes++;
+        }
+
+        public void visit(LiteralBool node) {
+            nodes++;
+        }
+
+        public void visit(LiteralFloat node) {
+            nodes++;
+        }
+
+        public void visit(LiteralInt node) {
+            nodes++;
+        }
+
+        public void visit(VariableDeclaration node) {
+            nodes++;
+        }
+
+        public void visit(ArrayDeclaration node) {
+            nodes++;
+        }
+
+        public void visit(FunctionDefinition node) {
+            nodes++;
+            node.body().accept(this);
+        }
+
+        public void visit(Addition node) {
+            nodes++;
+            node.leftSide().accept(this);
+            node.rightSide().accept(this);
+        }
+
+        public void visit(Subtraction node) {
+            nodes++;
+            node.leftSide().accept(this);
+            node.rightSide().accept(this);
+        }
+
+        public void visit(Multiplication node) {
+            nodes++;
+            node.leftSide().accept(this);
+            node.rightSide().accept(this);
+        }
+
+        public void visit(Division node) {
+            nodes++;
+            node.leftSide().accept(this);
+            node.rightSide().accept(this);
+        }
+
+        public void visit(LogicalAnd node) {
+            nodes++;
+            node.leftSide().accept(this);
+            node.rightSide().accept(this);
+        }
+
+        public void visit(LogicalOr node) {
+            nodes++;
+            node.leftSide().accept(this);
+            node.rightSide().accept(this);
+        }
+
+        public void visit(LogicalNot node) {
+            nodes++;
+            node.expression().accept(this);
+        }
+
+        public void visit(Comparison node) {
+            nodes++;
+            node.leftSide().accept(this);
+            node.rightSide().accept(this);
+        }
+
+        public void visit(Dereference node) {
+            nodes++;
+            node.expression().accept(this);
+        }
+
+        public void visit(Index node) {
+            nodes++;
+            node.base().accept(this);
+            node.amount().accept(this);
+        }
+
+        public void visit(Assignment node) {
+            nodes++;
+            node.destination().accept(this);
+            node.source().accept(this);
+        }
+
+        public void visit(Call node) {
+            nodes++;
+            node.arguments().accept(this);
+        }
+
+        public void visit(IfElseBranch node) {
+            nodes++;
+            node.condition().accept(this);
+            node.thenBlock().accept(this);
+            node.elseBlock().accept(this);
+        }
+
+        public void visit(WhileLoop node) {
+            nodes++;
+            node.condition().accept(this);
+            node.body().accept(this);
+        }
+
+        public void visit(Return node) {
+            nodes++;
+            node.argument().accept(this);
+        }
+
+        public void visit(ast.Error node) {
+            nodes++;
+        }
+
+        public void visit(ReadSymbol node) {
+            nodes++;
+        }
+    }
+
+    // The same count, with Walk doing the traversal.
+    private static class WalkCount implements WalkVisitor {
+        long nodes;
+
+        public void enter(Command node) {
+            nodes++;
+        }
+
+        public void after(Command parent, Command child) {
+        }
+
+        public void visit(ExpressionList node) {
+        }
+
+        public void visit(DeclarationList node) {
+        }
+
+        public void visit(StatementList node) {
+        }
+
+        public void visit(AddressOf node) {
+        }
+
+        public void visit(LiteralBool node) {
+        }
+
+        public void visit(LiteralFloat node) {
+        }
+
+        public void visit(LiteralInt node) {
+        }
+
+        public void visit(VariableDeclaration node) {
+        }
+
+        public void visit(ArrayDeclaration node) {
+        }
+
+        public void visit(FunctionDefinition node) {
+        }
+
+        public void visit(Addition node) {
+        }
+
+        public void visit(Subtraction node) {
+        }
+
+        public void visit(Multiplication node) {
+        }
+
+        public void visit(Division node) {
+        }
+
+        public void visit(LogicalAnd node) {
+        }
+
+        public void visit(LogicalOr node) {
+        }
+
+        public void visit(LogicalNot node) {
+        }
+
+        public void visit(Comparison node) {
+        }
+
+        public void visit(Dereference node) {
+        }
+
+        public void visit(Index node) {
+        }
+
+        public void visit(Assignment node) {
+        }
+
+        public void visit(Call node) {
+        }
+
+        public void visit(IfElseBranch node) {
+        }
+
+        public void visit(WhileLoop node) {
+        }
+
+        public void visit(Return node) {
+        }
+
+        public void visit(ast.Error node) {
+        }
+
+        public void visit(ReadSymbol node) {
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package crux;
+
+import java.util.concurrent.ForkJoinPool;
+
+/* Parallel lexing (user-008). Before, a source was lexed by one Scanner pass;
+ * after, TokenBuffer.lex(source, pool) lexes newline-split chunks on a
+ * ForkJoinPool and stitches them together. The parallel lex is timed on pools
+ * of 1 up to twice the available cores, so its scaling shows only on a
+ * machine with that many cores.
+ */
+public class ParallelLexBench {
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("available processors: " + Runtime.getRuntime().availableProcessors());
+        run("tests", Bench.corpus(args));
+        run("synthetic program of 40000 functions", Bench.program(40000));
+    }
+
+    private static void run(String input, final char[] text) throws Exception {
+        Bench.heading(input, text);
+        Bench.time("before: TokenBuffer.lex", new Bench.Task() {
+            public long run() {
+                return TokenBuffer.lex(text).size();
+            }
+        });
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= Math.max(2, 2 * cores); threads *= 2) {
+            final ForkJoinPool pool = new ForkJoinPool(threads);
+            Bench.time("after:  TokenBuffer.lex on " + threads + " thread(s)", new Bench.Task() {
+                public long run() {
+                    return TokenBuffer.lex(text, pool).size();
+                }
+            });
+            pool.shutdown();
+        }
+    }
+}
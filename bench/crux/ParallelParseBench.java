@@ -0,0 +1,65 @@
+package crux;
+
+import java.util.concurrent.ForkJoinPool;
+
+/* Parallel parsing (user-016). Before, parse() walked the whole token buffer
+ * on one thread; after, parse(pool) cuts it into top-level declaration spans
+ * and parses each function definition on a ForkJoinPool. Both parse the same
+ * lexed buffer, so lexing is not timed. The parallel parse is timed on pools
+ * of 1 up to twice the available cores, so its scaling shows only on a
+ * machine with that many cores.
+ */
+public class ParallelParseBench {
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("available processors: " + Runtime.getRuntime().availableProcessors());
+        ForkJoinPool pool = new ForkJoinPool(2);
+        System.out.println("same trees: " + sameTrees(Bench.corpus(args), pool)
+                + ", and on a program of 200 functions: " + sameTrees(Bench.program(200), pool));
+        pool.shutdown();
+        run("tests", Bench.corpus(args));
+        run("synthetic program of 20000 functions", Bench.program(20000));
+    }
+
+    private static void run(String input, char[] text) throws Exception {
+        Bench.heading(input, text);
+        final TokenBuffer tokens = TokenBuffer.lex(text);
+        Bench.time("before: Parser.parse()", new Bench.Task() {
+            public long run() {
+                return declarations(new Parser(tokens).parse());
+            }
+        });
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= Math.max(2, 2 * cores); threads *= 2) {
+            final ForkJoinPool pool = new ForkJoinPool(threads);
+            Bench.time("after:  Parser.parse(pool) on " + threads + " thread(s)", new Bench.Task() {
+                public long run() {
+                    return declarations(new Parser(tokens).parse(pool));
+                }
+            });
+            pool.shutdown();
+        }
+    }
+
+    private static long declarations(ast.Command tree) {
+        long count = 0;
+        if (tree instanceof ast.DeclarationList) {
+            for (ast.Declaration declaration : (ast.DeclarationList) tree)
+                count++;
+        }
+        return count;
+    }
+
+    // Whether both parses print the same tree and errors.
+    private static boolean sameTrees(char[] text, ForkJoinPool pool) {
+        return printed(new Parser(TokenBuffer.lex(text)), null)
+                .equals(printed(new Parser(TokenBuffer.lex(text)), pool));
+    }
+
+    private static String printed(Parser parser, ForkJoinPool pool) {
+        ast.Command tree = pool == null ? parser.parse() : parser.parse(pool);
+        ast.PrettyPrinter printer = new ast.PrettyPrinter();
+        tree.accept(printer);
+        return printer.toString() + parser.errorReport();
+    }
+}
@@ -0,0 +1,82 @@
+package crux;
+
+/* Skipping runs of whitespace, identifier characters and digits (user-010).
+ * Before is the scalar loop alone, a character at a time; after hands each
+ * run to CharRuns.INSTANCE first. That is VectorRuns only when it is built
+ * from vector/ and the module is resolved:
+ *
+ *   javac --add-modules jdk.incubator.vector -cp out/bench -d out/bench vector/crux/VectorRuns.java
+ *   java --add-modules jdk.incubator.vector -cp out/bench crux.RunBench
+ *
+ * The runs are timed as the Scanner's skip loops walk them, then the whole
+ * Scanner, which uses whichever CharRuns was loaded.
+ */
+public class RunBench {
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("runs: " + CharRuns.INSTANCE.getClass().getName());
+        run("tests", Bench.corpus(args));
+        run("indented lines with long identifiers", indented(8000000));
+    }
+
+    private static void run(String input, final char[] text) throws Exception {
+        Bench.heading(input, text);
+        final CharRuns scalar = new CharRuns();
+        Bench.time("before: runs by the scalar loop", new Bench.Task() {
+            public long run() {
+                return walk(text, scalar);
+            }
+        });
+        Bench.time("after:  runs by " + CharRuns.INSTANCE.getClass().getSimpleName(), new Bench.Task() {
+            public long run() {
+                return walk(text, CharRuns.INSTANCE);
+            }
+        });
+        Bench.time("after:  Scanner", new Bench.Task() {
+            public long run() {
+                Scanner scanner = new Scanner(text);
+                long tokens = 0;
+                while (!scanner.next().is(Token.Kind.EOF))
+                    tokens++;
+                return tokens;
+            }
+        });
+    }
+
+    // Walks text run by run as the Scanner's skip loops do, counting the runs
+    // and lines.
+    private static long walk(char[] text, CharRuns runs) {
+        long count = 0;
+        int end = text.length;
+        int i = 0;
+        while (i < end) {
+            char c = text[i];
+            if (Character.isWhitespace(c)) {
+                i = runs.skip(text, i + 1, end, Scanner.WHITESPACE);
+                while (i < end && Character.isWhitespace(text[i])) {
+                    if (text[i] == '\n')
+                        count++;
+                    i = runs.skip(text, i + 1, end, Scanner.WHITESPACE);
+                }
+            } else if (Character.isLetterOrDigit(c) || c == '_') {
+                i = runs.skip(text, i + 1, end, Scanner.IDENTIFIER);
+                while (i < end && (Character.isLetterOrDigit(text[i]) || text[i] == '_'))
+                    i++;
+            } else {
+                i++;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    // Lines indented 24 spaces, each an assignment of long identifiers.
+    static char[] indented(int size) {
+        StringBuilder text = new StringBuilder(size + 200);
+        for (int i = 0; text.length() < size; i++) {
+            text.append("                        let some_rather_long_identifier_name").append(i % 97);
+            text.append(" = 1234567890 + other_identifier_here;\n");
+        }
+        return Bench.chars(text);
+    }
+}
@@ -0,0 +1,142 @@
+package crux;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Vector;
+
+/* Hash-indexed scopes (user-021). Before, a SymbolTable scanned a Vector of
+ * its symbols comparing names with String.equals, once per enclosing scope on
+ * lookup and once more on insert to catch a redeclaration; VectorScope below
+ * is that table, kept as a model. After, each scope finds a name by its
+ * interned id. Both are timed declaring every global of a scope of 10000 to
+ * 100000, the model only up to MODEL_INSERT_LIMIT, and looking up a sample of
+ * them from a block two scopes down; and on tests, declaring its distinct
+ * identifiers as globals and looking up each occurrence of one.
+ */
+public class ScopeBench {
+
+    private static final int SAMPLE = 1000; // lookups per scope size
+    private static final int MODEL_INSERT_LIMIT = 10000; // quadratic, and seconds a run beyond
+
+    public static void main(String[] args) throws Exception {
+        corpus(Bench.corpus(args));
+        for (int globals : new int[] { 10000, 30000, 100000 })
+            synthetic(globals);
+    }
+
+    private static void corpus(char[] text) throws Exception {
+        Bench.heading("tests", text);
+        TokenBuffer tokens = TokenBuffer.lex(text);
+        List<String> uses = new ArrayList<String>();
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.kind(i) == Token.Kind.IDENTIFIER)
+                uses.add(tokens.lexeme(i));
+        }
+        Set<String> distinct = new LinkedHashSet<String>(uses);
+        run(distinct.toArray(new String[distinct.size()]), uses.toArray(new String[uses.size()]), true);
+    }
+
+    private static void synthetic(int globals) throws Exception {
+        System.out.printf("%d globals:%n", globals);
+        String[] names = new String[globals];
+        for (int i = 0; i < globals; i++)
+            names[i] = "g" + i;
+        String[] sample = new String[SAMPLE];
+        for (int i = 0; i < SAMPLE; i++)
+            sample[i] = names[(int) ((long) i * globals / SAMPLE)];
+        run(names, sample, globals <= MODEL_INSERT_LIMIT);
+    }
+
+    private static void run(final String[] names, final String[] lookups, boolean modelInserts) throws Exception {
+        if (modelInserts) {
+            Bench.time("before: VectorScope.insert (model)", new Bench.Task() {
+                public long run() throws Exception {
+                    return declare(new VectorScope(), names).size();
+                }
+            });
+        } else {
+            System.out.printf("  %-44s skipped, quadratic%n", "before: VectorScope.insert (model)");
+        }
+        Bench.time("after:  SymbolTable.insert", new Bench.Task() {
+            public long run() throws Exception {
+                return declare(new SymbolTable(), names).size();
+            }
+        });
+
+        final VectorScope vectorBlock = new VectorScope(new VectorScope(declare(new VectorScope(), names)));
+        final SymbolTable tableBlock = new SymbolTable(new SymbolTable(declare(new SymbolTable(), names)));
+        Bench.time("before: VectorScope.lookup (model)", new Bench.Task() {
+            public long run() throws Exception {
+                long found = 0;
+                for (String name : lookups)
+                    found += vectorBlock.lookup(name).name().length();
+                return found;
+            }
+        });
+        Bench.time("after:  SymbolTable.lookup", new Bench.Task() {
+            public long run() throws Exception {
+                long found = 0;
+                for (String name : lookups)
+                    found += tableBlock.lookup(name).name().length();
+                return found;
+            }
+        });
+    }
+
+    private static VectorScope declare(VectorScope scope, String[] names) throws RedeclarationError {
+        for (String name : names)
+            scope.insert(name);
+        return scope;
+    }
+
+    private static SymbolTable declare(SymbolTable scope, String[] names) throws RedeclarationError {
+        for (String name : names)
+            scope.insert(name);
+        return scope;
+    }
+
+    // SymbolTable as it was before user-021.
+    private static class VectorScope {
+        private final VectorScope parent;
+        private final Vector<Symbol> table = new Vector<Symbol>();
+
+        VectorScope() {
+            this.parent = null;
+        }
+
+        VectorScope(VectorScope parent) {
+            this.parent = parent;
+        }
+
+        Symbol lookup(String name) throws SymbolNotFoundError {
+            Symbol sym = get(name);
+            if (sym == null && parent != null)
+                return parent.lookup(name);
+            else if (sym == null)
+                throw new SymbolNotFoundError(name);
+            else
+                return sym;
+        }
+
+        private Symbol get(String name) {
+            for (Symbol sym : table)
+                if (sym.name().equals(name))
+                    return sym;
+            return null;
+        }
+
+        Symbol insert(String name) throws RedeclarationError {
+            if (get(name) != null)
+                throw new RedeclarationError(get(name));
+            Symbol sym = new Symbol(name);
+            table.add(sym);
+            return sym;
+        }
+
+        int size() {
+            return table.size();
+        }
+    }
+}
@@ -23,6 +23,12 @@ public abstract class Command implements Visitable {
 		return charPos;
 	}
 	
+	// for LineShifter, when text above the node gained or lost lines
+	void shiftLines(int lines)
+	{
+		lineNum += lines;
+	}
+	
 	@Override
 	public String toString()
 	{
@@ -31,10 +37,12 @@ public abstract class Command implements Visitable {
 
 	public static Expression newExpression(Expression leftSide, Token op, Expression rightSide)
 	{
-		int lineNum = op.lineNumber();
-		int charPos = op.charPosition();
-		
-		switch(op.kind())
+		return newExpression(leftSide, op.kind(), op.lineNumber(), op.charPosition(), rightSide);
+	}
+	
+	public static Expression newExpression(Expression leftSide, Token.Kind op, int lineNum, int charPos, Expression rightSide)
+	{
+		switch(op)
 		{
 		case ADD: return new Addition(lineNum, charPos, leftSide, rightSide);
 		case SUB: return new Subtraction(lineNum, charPos, leftSide, rightSide);
@@ -52,19 +60,24 @@ public abstract class Command implements Visitable {
 		case GREATER_EQUAL: return new Comparison(lineNum, charPos, leftSide, Comparison.Operation.GE, rightSide);
 		case GREATER_THAN:  return new Comparison(lineNum, charPos, leftSide, Comparison.Operation.GT, rightSide);
 		
-		default: return new Error(op.lineNumber(), op.charPosition(), "Unknown Operation: " + op);
+		default: return new Error(lineNum, charPos, "Unknown Operation: " + op);
 		}
 	}
 	
 	public static Expression newLiteral(Token tok)
 	{
-		switch(tok.kind())
+		return newLiteral(tok.kind(), tok.lexeme(), tok.lineNumber(), tok.charPosition());
+	}
+	
+	public static Expression newLiteral(Token.Kind kind, String lexeme, int lineNum, int charPos)
+	{
+		switch(kind)
 		{
-		case TRUE: return new LiteralBool(tok.lineNumber(), tok.charPosition(), LiteralBool.Value.TRUE);
-		case FALSE: return new LiteralBool(tok.lineNumber(), tok.charPosition(), LiteralBool.Value.FALSE);
-		case INTEGER: return new LiteralInt(tok.lineNumber(), tok.charPosition(), Integer.valueOf(tok.lexeme()));
-		case FLOAT: return new LiteralFloat(tok.lineNumber(), tok.charPosition(), Float.valueOf(tok.lexeme()));
-		default: return new Error(tok.lineNumber(), tok.charPosition(), "Unknown Operation: " + tok);
+		case TRUE: return new LiteralBool(lineNum, charPos, LiteralBool.Value.TRUE);
+		case FALSE: return new LiteralBool(lineNum, charPos, LiteralBool.Value.FALSE);
+		case INTEGER: return new LiteralInt(lineNum, charPos, Integer.valueOf(lexeme));
+		case FLOAT: return new LiteralFloat(lineNum, charPos, Float.valueOf(lexeme));
+		default: return new Error(lineNum, charPos, "Unknown Operation: " + kind);
 		}
 	}
 }
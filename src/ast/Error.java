@@ -4,16 +4,16 @@ import crux.Symbol;
 
 public class Error extends Command implements Declaration, Statement, Expression {
 	
-	private String message;
+	private Object message; // its toString() is the message, built when read
 
-	public Error(int lineNum, int charPos, String message) {
+	public Error(int lineNum, int charPos, Object message) {
 		super(lineNum, charPos);
 		this.message = message;
 	}
 	
 	public String message()
 	{
-		return message;
+		return message.toString();
 	}
 	
 	@Override
@@ -24,7 +24,7 @@ public class Error extends Command implements Declaration, Statement, Expression
 	
 	@Override
 	public Symbol symbol() {
-		return Symbol.newError(message);
+		return Symbol.newError(message());
 	}
 
 	@Override
@@ -0,0 +1,132 @@
+package ast;
+
+/* Moves every node of a tree the same number of lines up or down, for a tree
+ * kept across an edit that added or removed lines above it. Run it with
+ * Walk.walk; every node is moved as it is entered.
+ */
+public class LineShifter implements WalkVisitor {
+	
+	private int lines;
+	
+	public LineShifter(int lines)
+	{
+		this.lines = lines;
+	}
+
+	@Override
+	public void enter(Command node) {
+		node.shiftLines(lines);
+	}
+
+	@Override
+	public void after(Command parent, Command child) {
+	}
+
+	@Override
+	public void visit(ExpressionList node) {
+	}
+
+	@Override
+	public void visit(DeclarationList node) {
+	}
+
+	@Override
+	public void visit(StatementList node) {
+	}
+
+	@Override
+	public void visit(AddressOf node) {
+	}
+
+	@Override
+	public void visit(LiteralBool node) {
+	}
+
+	@Override
+	public void visit(LiteralFloat node) {
+	}
+
+	@Override
+	public void visit(LiteralInt node) {
+	}
+
+	@Override
+	public void visit(VariableDeclaration node) {
+	}
+
+	@Override
+	public void visit(ArrayDeclaration node) {
+	}
+
+	@Override
+	public void visit(FunctionDefinition node) {
+	}
+
+	@Override
+	public void visit(Addition node) {
+	}
+
+	@Override
+	public void visit(Subtraction node) {
+	}
+
+	@Override
+	public void visit(Multiplication node) {
+	}
+
+	@Override
+	public void visit(Division node) {
+	}
+
+	@Override
+	public void visit(LogicalAnd node) {
+	}
+
+	@Override
+	public void visit(LogicalOr node) {
+	}
+
+	@Override
+	public void visit(LogicalNot node) {
+	}
+
+	@Override
+	public void visit(Comparison node) {
+	}
+
+	@Override
+	public void visit(Dereference node) {
+	}
+
+	@Override
+	public void visit(Index node) {
+	}
+
+	@Override
+	public void visit(Assignment node) {
+	}
+
+	@Override
+	public void visit(Call node) {
+	}
+
+	@Override
+	public void visit(IfElseBranch node) {
+	}
+
+	@Override
+	public void visit(WhileLoop node) {
+	}
+
+	@Override
+	public void visit(Return node) {
+	}
+
+	@Override
+	public void visit(Error node) {
+	}
+
+	@Override
+	public void visit(ReadSymbol node) {
+	}
+}
@@ -1,9 +1,14 @@
 package ast;
 
-public class PrettyPrinter implements CommandVisitor {
+/* Prints a tree one node per line, indented by depth. Nodes print as they
+ * are entered, by Walk; tree.accept(printer) starts that walk, as a visit
+ * method reached from outside of one walks the node's subtree.
+ */
+public class PrettyPrinter implements WalkVisitor {
 	
 	private int depth = 0;
 	private StringBuffer sb = new StringBuffer();
+	private boolean walking = false;
 	
 	private void println(Object obj)
 	{
@@ -21,215 +26,163 @@ public class PrettyPrinter implements CommandVisitor {
 	}
 	
 	@Override
-	public void visit(ExpressionList node) {
+	public void enter(Command node) {
 		println(node);
 		depth++;
-		for (Expression e : node)
-			e.accept(this);
-		depth--;
+	}
+	
+	@Override
+	public void after(Command parent, Command child) {
+	}
+	
+	// what every visit method does: within a walk the node is done, otherwise
+	// it is where a walk starts
+	private void leave(Command node)
+	{
+		if (walking) {
+			depth--;
+			return;
+		}
+		walking = true;
+		try {
+			Walk.walk(node, this);
+		} finally {
+			walking = false;
+		}
+	}
+
+	@Override
+	public void visit(ExpressionList node) {
+		leave(node);
 	}
 
 	@Override
 	public void visit(DeclarationList node) {
-		println(node);
-		depth++;
-		for (Declaration d : node)
-			d.accept(this);
-		depth--;
+		leave(node);
 	}
 
 	@Override
 	public void visit(StatementList node) {
-		println(node);
-		depth++;
-		for (Statement s : node)
-			s.accept(this);
-		depth--;
+		leave(node);
 	}
 
 	@Override
 	public void visit(AddressOf node) {
-		println(node);
+		leave(node);
 	}
 
 	@Override
 	public void visit(LiteralBool node) {
-		println(node);
+		leave(node);
 	}
 
 	@Override
 	public void visit(LiteralFloat node) {
-		println(node);
+		leave(node);
 	}
 
 	@Override
 	public void visit(LiteralInt node) {
-		println(node);
+		leave(node);
 	}
 
 	@Override
 	public void visit(VariableDeclaration node) {
-		println(node);
+		leave(node);
 	}
 
 	@Override
 	public void visit(ArrayDeclaration node) {
-		println(node);
+		leave(node);
 	}
 
 	@Override
 	public void visit(FunctionDefinition node) {
-		println(node);
-		depth++;
-		node.body().accept(this);
-		depth--;
+		leave(node);
 	}
 
 	@Override
 	public void visit(Comparison node) {
-	 	println(node);
-		depth++;
-		node.leftSide().accept(this);
-		node.rightSide().accept(this);
-		depth--;
+		leave(node);
 	}
 
 	@Override
 	public void visit(Addition node) {
-		println(node);
-		depth++;
-		node.leftSide().accept(this);
-		node.rightSide().accept(this);
-		depth--;
+		leave(node);
 	}
 
 	@Override
 	public void visit(Subtraction node) {
-		println(node);
-		depth++;
-		node.leftSide().accept(this);
-		node.rightSide().accept(this);
-		depth--;
+		leave(node);
 	}
 
 	@Override
 	public void visit(Multiplication node) {
-		println(node);
-		depth++;
-		node.leftSide().accept(this);
-		node.rightSide().accept(this);
-		depth--;
+		leave(node);
 	}
-	
+
 	@Override
 	public void visit(Division node) {
-		println(node);
-		depth++;
-		node.leftSide().accept(this);
-		node.rightSide().accept(this);
-		depth--;
+		leave(node);
 	}
 
 	@Override
 	public void visit(LogicalAnd node) {
-		println(node);
-		depth++;
-		node.leftSide().accept(this);
-		node.rightSide().accept(this);
-		depth--;
+		leave(node);
 	}
 
 	@Override
 	public void visit(LogicalOr node) {
-		println(node);
-		depth++;
-		node.leftSide().accept(this);
-		node.rightSide().accept(this);
-		depth--;
+		leave(node);
 	}
 
 	@Override
 	public void visit(LogicalNot node) {
-		println(node);
-		depth++;
-		node.expression().accept(this);
-		depth--;
+		leave(node);
 	}
-	
+
 	@Override
-	public void visit(Dereference node)
-	{
-		println(node);
-		depth++;
-		node.expression().accept(this);
-		depth--;
+	public void visit(Dereference node) {
+		leave(node);
 	}
 
 	@Override
 	public void visit(Index node) {
-		println(node);
-		depth++;
-		node.base().accept(this);
-		node.amount().accept(this);
-		depth--;
+		leave(node);
 	}
 
 	@Override
 	public void visit(Assignment node) {
-		println(node);
-		depth++;
-		node.destination().accept(this);
-		node.source().accept(this);
-		depth--;
+		leave(node);
 	}
 
 	@Override
 	public void visit(Call node) {
-		println(node);
-		depth++;
-		node.arguments().accept(this);
-		depth--;
+		leave(node);
 	}
 
 	@Override
 	public void visit(IfElseBranch node) {
-		println(node);
-		depth++;
-		node.condition().accept(this);
-		node.thenBlock().accept(this);
-		node.elseBlock().accept(this);
-		depth--;
+		leave(node);
 	}
 
 	@Override
 	public void visit(WhileLoop node) {
-		println(node);
-		depth++;
-		node.condition().accept(this);
-		node.body().accept(this);
-		depth--;
+		leave(node);
 	}
 
 	@Override
 	public void visit(Return node) {
-		println(node);
-		depth++;
-		node.argument().accept(this);
-		depth--;
+		leave(node);
 	}
 
 	@Override
 	public void visit(Error node) {
-		println(node);
+		leave(node);
 	}
 
-	/* (non-Javadoc)
-	 * @see ast.CommandVisitor#visit(ast.ReadSymbol)
-	 */
 	@Override
 	public void visit(ReadSymbol readSymbol) {
-		// TODO Auto-generated method stub
-		
+		leave(readSymbol);
 	}
-
 }
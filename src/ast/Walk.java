@@ -0,0 +1,195 @@
+package ast;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Stack;
+
+/* Walks a tree depth first for a WalkVisitor, keeping the path from the root
+ * on an explicit stack rather than the Java one, so however deeply a program
+ * nests only the heap limits it. Children are walked in the order
+ * PrettyPrinter prints them.
+ */
+public class Walk {
+	
+	// a node being walked, and those of its children not yet walked
+	private static class Frame
+	{
+		final Command node;
+		final Iterator<? extends Visitable> children;
+		
+		Frame(Command node, Iterator<? extends Visitable> children)
+		{
+			this.node = node;
+			this.children = children;
+		}
+	}
+	
+	public static void walk(Command root, WalkVisitor visitor)
+	{
+		Children children = new Children();
+		Stack<Frame> path = new Stack<Frame>();
+		visitor.enter(root);
+		path.push(new Frame(root, children.of(root)));
+		while (!path.isEmpty()) {
+			Frame top = path.peek();
+			if (top.children.hasNext()) {
+				Command child = (Command) top.children.next();
+				visitor.enter(child);
+				path.push(new Frame(child, children.of(child)));
+				continue;
+			}
+			path.pop();
+			top.node.accept(visitor);
+			if (!path.isEmpty())
+				visitor.after(path.peek().node, top.node);
+		}
+	}
+	
+	// the children of a node, found by visiting it
+	private static class Children implements CommandVisitor {
+		
+		private static final Iterator<Visitable> NONE = Collections.<Visitable>emptyList().iterator();
+		
+		private Iterator<? extends Visitable> children;
+		
+		Iterator<? extends Visitable> of(Command node)
+		{
+			children = NONE;
+			node.accept(this);
+			return children;
+		}
+		
+		private void are(Visitable... nodes)
+		{
+			children = Arrays.asList(nodes).iterator();
+		}
+
+		@Override
+		public void visit(ExpressionList node) {
+			children = node.iterator();
+		}
+
+		@Override
+		public void visit(DeclarationList node) {
+			children = node.iterator();
+		}
+
+		@Override
+		public void visit(StatementList node) {
+			children = node.iterator();
+		}
+
+		@Override
+		public void visit(AddressOf node) {
+		}
+
+		@Override
+		public void visit(LiteralBool node) {
+		}
+
+		@Override
+		public void visit(LiteralFloat node) {
+		}
+
+		@Override
+		public void visit(LiteralInt node) {
+		}
+
+		@Override
+		public void visit(VariableDeclaration node) {
+		}
+
+		@Override
+		public void visit(ArrayDeclaration node) {
+		}
+
+		@Override
+		public void visit(FunctionDefinition node) {
+			are(node.body());
+		}
+
+		@Override
+		public void visit(Addition node) {
+			are(node.leftSide(), node.rightSide());
+		}
+
+		@Override
+		public void visit(Subtraction node) {
+			are(node.leftSide(), node.rightSide());
+		}
+
+		@Override
+		public void visit(Multiplication node) {
+			are(node.leftSide(), node.rightSide());
+		}
+
+		@Override
+		public void visit(Division node) {
+			are(node.leftSide(), node.rightSide());
+		}
+
+		@Override
+		public void visit(LogicalAnd node) {
+			are(node.leftSide(), node.rightSide());
+		}
+
+		@Override
+		public void visit(LogicalOr node) {
+			are(node.leftSide(), node.rightSide());
+		}
+
+		@Override
+		public void visit(LogicalNot node) {
+			are(node.expression());
+		}
+
+		@Override
+		public void visit(Comparison node) {
+			are(node.leftSide(), node.rightSide());
+		}
+
+		@Override
+		public void visit(Dereference node) {
+			are(node.expression());
+		}
+
+		@Override
+		public void visit(Index node) {
+			are(node.base(), node.amount());
+		}
+
+		@Override
+		public void visit(Assignment node) {
+			are(node.destination(), node.source());
+		}
+
+		@Override
+		public void visit(Call node) {
+			are(node.arguments());
+		}
+
+		@Override
+		public void visit(IfElseBranch node) {
+			are(node.condition(), node.thenBlock(), node.elseBlock());
+		}
+
+		@Override
+		public void visit(WhileLoop node) {
+			are(node.condition(), node.body());
+		}
+
+		@Override
+		public void visit(Return node) {
+			are(node.argument());
+		}
+
+		@Override
+		public void visit(Error node) {
+		}
+
+		@Override
+		public void visit(ReadSymbol node) {
+		}
+	}
+}
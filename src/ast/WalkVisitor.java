@@ -0,0 +1,12 @@
+package ast;
+
+/* A CommandVisitor whose traversal is done by Walk rather than by its visit
+ * methods. Walk calls enter(node) before any of node's children, after(node,
+ * child) as each child is done, and node.accept(visitor) once all of them
+ * are, so a visit method only finishes its own node and never calls accept.
+ */
+public interface WalkVisitor extends CommandVisitor {
+	
+	public void enter(Command node);
+	public void after(Command parent, Command child);
+}
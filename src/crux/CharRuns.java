@@ -0,0 +1,27 @@
+package crux;
+
+/* Skips the ASCII part of a run of one Scanner character class in bulk, ahead
+ * of the Scanner's own loop over the window. This version skips nothing, so
+ * the Scanner does it all. VectorRuns, built from the vector/ source folder,
+ * classifies a vector of characters at a time instead, and is used whenever
+ * it and the jdk.incubator.vector module are both there at run time.
+ */
+class CharRuns {
+
+    static final CharRuns INSTANCE = load();
+
+    // Where the run of charClass characters from window[from] ends, or any
+    // index before that; never past a '\n' or a non-ASCII character, which the
+    // Scanner looks at itself.
+    int skip(char[] window, int from, int to, int charClass) {
+        return from;
+    }
+
+    private static CharRuns load() {
+        try {
+            return (CharRuns) Class.forName("crux.VectorRuns").getDeclaredConstructor().newInstance();
+        } catch (Throwable e) { // not built, or jdk.incubator.vector not resolved
+            return new CharRuns();
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package crux;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 
 public class Compiler {
     public static String studentName = "Ram Bhakta";
@@ -11,19 +14,31 @@ public class Compiler {
     public static String uciNetID = "hrbhakta";
 
     public static void main(String[] args) {
+        // --tables parses with the parser generated from crux.grammar;
+        // --flat-scopes keeps the scopes in a FlatSymbolTable
+        List<String> flags = Arrays.asList(args);
+        boolean parseTables = flags.contains("--tables");
+        boolean flatScopes = flags.contains("--flat-scopes");
+
         for (int i = 1; i < 23; i++) {
             String sourceFilename = "tests/test" + (i > 9 ? i : "0" + i) + ".crx";
 
-            Scanner s = null;
+            Parser p = null;
             try {
-                s = new Scanner(new FileReader(sourceFilename));
+                if (parseTables) {
+                    byte[] bytes = Files.readAllBytes(Paths.get(sourceFilename));
+                    p = new Parser(TokenBuffer.lex(new String(bytes, "UTF-8").toCharArray()));
+                    p.useParseTables(true);
+                } else {
+                    p = new Parser(Scanner.map(sourceFilename));
+                }
+                p.useFlatScopes(flatScopes);
             } catch (IOException e) {
                 e.printStackTrace();
                 System.err.println("Error accessing the source file: \"" + sourceFilename + "\"");
                 System.exit(-2);
             }
 
-            Parser p = new Parser(s);
             ast.Command syntaxTree = p.parse();
             if (p.hasError()) {
                 System.out.println("Error parsing file " + sourceFilename);
@@ -0,0 +1,76 @@
+package crux;
+
+/* One error found while compiling: what kind it is, where, and the pieces of
+ * its message. The pieces are only joined into text when someone reads it.
+ */
+public class Diagnostic {
+
+    public enum Code {
+        SYNTAX("SyntaxError"),
+        RESOLVE_SYMBOL("ResolveSymbolError"),
+        DECLARE_SYMBOL("DeclareSymbolError"),
+        TYPE("TypeError"),
+        CODE_GEN("CodeGenError");
+
+        private final String label;
+
+        Code(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    private final Code code;
+    private final int lineNum;
+    private final int charPos;
+    private Object[] parts; // dropped once text is built
+    private String text;
+    private String detail;  // extra lines printed after it, or null
+
+    Diagnostic(Code code, int lineNum, int charPos, Object[] parts) {
+        this.code = code;
+        this.lineNum = lineNum;
+        this.charPos = charPos;
+        this.parts = parts;
+    }
+
+    public Code code() {
+        return code;
+    }
+
+    public int lineNumber() {
+        return lineNum;
+    }
+
+    public int charPosition() {
+        return charPos;
+    }
+
+    // the message inside the brackets
+    public String message() {
+        if (parts != null) {
+            StringBuilder sb = new StringBuilder();
+            for (Object part : parts)
+                sb.append(part);
+            text = sb.toString();
+            parts = null;
+        }
+        return text;
+    }
+
+    public String detail() {
+        return detail;
+    }
+
+    void setDetail(String detail) {
+        this.detail = detail;
+    }
+
+    @Override
+    public String toString() {
+        return code.label() + "(" + lineNum + "," + charPos + ")[" + message() + "]";
+    }
+}
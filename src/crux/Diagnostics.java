@@ -0,0 +1,90 @@
+package crux;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/* Collects the errors of a compiler phase. Parser, TypeChecker and CodeGen
+ * each keep one; diagnostics() on them hands it out for configuring.
+ *  - at most limit() errors are kept, the rest are only counted
+ *  - a symbol table dump is attached to symbol errors only if asked for,
+ *    as it lists every symbol in scope and so can dwarf the errors themselves
+ */
+public class Diagnostics {
+
+    private List<Diagnostic> kept = new ArrayList<Diagnostic>();
+    private int count = 0;
+    private int limit = Integer.MAX_VALUE;
+    private boolean scopeDumps = false;
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public void setScopeDumps(boolean scopeDumps) {
+        this.scopeDumps = scopeDumps;
+    }
+
+    public boolean scopeDumps() {
+        return scopeDumps;
+    }
+
+    // Records an error whose message is the parts joined together, and
+    // returns it. Over the limit it is only counted and null is returned.
+    public Diagnostic report(Diagnostic.Code code, int lineNum, int charPos, Object... message) {
+        count++;
+        if (kept.size() >= limit)
+            return null;
+        Diagnostic diagnostic = new Diagnostic(code, lineNum, charPos, message);
+        kept.add(diagnostic);
+        return diagnostic;
+    }
+
+    // Records an error along with the symbols in scope, if scope dumps are on.
+    public Diagnostic reportInScope(Diagnostic.Code code, int lineNum, int charPos, SymbolTable scope, Object... message) {
+        Diagnostic diagnostic = report(code, lineNum, charPos, message);
+        if (diagnostic != null && scopeDumps)
+            diagnostic.setDetail(scope.toString());
+        return diagnostic;
+    }
+
+    // Takes on the errors other recorded, as if they were reported here next.
+    void append(Diagnostics other) {
+        for (Diagnostic diagnostic : other.kept) {
+            count++;
+            if (kept.size() < limit)
+                kept.add(diagnostic);
+        }
+        count += other.count - other.kept.size();
+    }
+
+    public boolean hasError() {
+        return count != 0;
+    }
+
+    // number of errors reported, including any over the limit
+    public int errorCount() {
+        return count;
+    }
+
+    public List<Diagnostic> diagnostics() {
+        return Collections.unmodifiableList(kept);
+    }
+
+    // The kept errors, one per line, each followed by its detail if it has one.
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Diagnostic diagnostic : kept) {
+            sb.append(diagnostic).append('\n');
+            if (diagnostic.detail() != null)
+                sb.append(diagnostic.detail()).append('\n');
+        }
+        if (count > kept.size())
+            sb.append("(").append(count - kept.size()).append(" more errors not shown)\n");
+        return sb.toString();
+    }
+}
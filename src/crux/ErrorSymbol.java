@@ -0,0 +1,15 @@
+package crux;
+
+class ErrorSymbol extends Symbol {
+    private final Object message; // its toString() is the name, built when read
+
+    public ErrorSymbol(Object message) {
+        super(null, -1);
+        this.message = message;
+    }
+
+    @Override
+    public String name() {
+        return message.toString();
+    }
+}
@@ -0,0 +1,230 @@
+package crux;
+
+import java.util.Arrays;
+
+/* SymbolTable's contract kept in one flat store rather than a table per
+ * scope. The globals stay in the root table, indexed as usual. The symbols of
+ * every nested scope go into a single open-addressing map from InternTable id
+ * to the innermost binding of that name, each binding linking to the one it
+ * shadows, and onto an undo log. Leaving a scope pops its bindings off the
+ * log, which restores whatever they shadowed. So entering and leaving a scope
+ * cost O(1) amortized, and a lookup at any depth is one probe in the map,
+ * then one in the globals if the name is not bound in a nested scope.
+ *
+ * The tables handed out are handles onto the store, one per depth and reused,
+ * so entering a scope allocates nothing once that depth was reached before.
+ * A parser that falls back to an enclosing table, as error recovery does,
+ * finds the scopes inside it left as soon as it uses that table again.
+ */
+class FlatSymbolTable extends SymbolTable {
+
+    private final Store store;
+    private final int level; // 0 for the root, which holds the globals
+
+    FlatSymbolTable(InternTable names) {
+        super(names);
+        this.store = new Store(this);
+        this.level = 0;
+    }
+
+    private FlatSymbolTable(FlatSymbolTable parent) {
+        super(parent);
+        this.store = parent.store;
+        this.level = parent.level + 1;
+    }
+
+    private static class Store {
+        final FlatSymbolTable root;
+        FlatSymbolTable[] handles = new FlatSymbolTable[8];
+        int level = 0;
+
+        // open addressing over ids: the innermost binding, or -1 once its
+        // scopes are left; an id keeps its slot so nothing is ever deleted
+        int[] keys = new int[64];
+        int[] innermost = new int[64];
+        boolean[] used = new boolean[64];
+        int slotCount = 0;
+
+        // bindings in order of declaration, the live ones being a stack
+        Symbol[] symbols = new Symbol[64];
+        int[] shadowed = new int[64]; // binding of the same id it hides, or -1
+        int[] slotOf = new int[64];
+        int[] levels = new int[64];
+        int bindingCount = 0;
+
+        int[] scopeStarts = new int[8]; // bindingCount as each level was entered
+
+        Store(FlatSymbolTable root) {
+            this.root = root;
+            handles[0] = root;
+        }
+
+        private static int hash(int id) {
+            return id * 0x9e3779b9;
+        }
+
+        // Slot of id, claimed if it has none yet.
+        int slot(int id) {
+            int mask = keys.length - 1;
+            int i = hash(id) & mask;
+            while (used[i]) {
+                if (keys[i] == id)
+                    return i;
+                i = (i + 1) & mask;
+            }
+            if ((slotCount + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+                return slot(id);
+            }
+            used[i] = true;
+            keys[i] = id;
+            innermost[i] = -1;
+            slotCount++;
+            return i;
+        }
+
+        // The innermost live binding of id, or -1.
+        int find(int id) {
+            int mask = keys.length - 1;
+            for (int i = hash(id) & mask; used[i]; i = (i + 1) & mask) {
+                if (keys[i] == id)
+                    return innermost[i];
+            }
+            return -1;
+        }
+
+        private void rehash(int capacity) {
+            int[] oldKeys = keys;
+            int[] oldInnermost = innermost;
+            boolean[] oldUsed = used;
+            keys = new int[capacity];
+            innermost = new int[capacity];
+            used = new boolean[capacity];
+            int mask = capacity - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (!oldUsed[j])
+                    continue;
+                int i = hash(oldKeys[j]) & mask;
+                while (used[i])
+                    i = (i + 1) & mask;
+                used[i] = true;
+                keys[i] = oldKeys[j];
+                innermost[i] = oldInnermost[j];
+                if (oldInnermost[j] >= 0)
+                    relink(oldInnermost[j], i);
+            }
+        }
+
+        // Points the bindings of a chain at its new slot.
+        private void relink(int binding, int slot) {
+            for (int b = binding; b >= 0; b = shadowed[b])
+                slotOf[b] = slot;
+        }
+
+        Symbol bind(int id) {
+            if (bindingCount == symbols.length) {
+                int capacity = bindingCount * 2;
+                symbols = Arrays.copyOf(symbols, capacity);
+                shadowed = Arrays.copyOf(shadowed, capacity);
+                slotOf = Arrays.copyOf(slotOf, capacity);
+                levels = Arrays.copyOf(levels, capacity);
+            }
+            int slot = slot(id);
+            int b = bindingCount++;
+            Symbol sym = new Symbol(root.names().name(id), id);
+            symbols[b] = sym;
+            shadowed[b] = innermost[slot];
+            slotOf[b] = slot;
+            levels[b] = level;
+            innermost[slot] = b;
+            return sym;
+        }
+
+        FlatSymbolTable enter() {
+            level++;
+            if (level == scopeStarts.length) {
+                scopeStarts = Arrays.copyOf(scopeStarts, level * 2);
+                handles = Arrays.copyOf(handles, level * 2);
+            }
+            scopeStarts[level] = bindingCount;
+            if (handles[level] == null)
+                handles[level] = new FlatSymbolTable(handles[level - 1]);
+            return handles[level];
+        }
+
+        void leave() {
+            int start = scopeStarts[level];
+            while (bindingCount > start) {
+                int b = --bindingCount;
+                innermost[slotOf[b]] = shadowed[b];
+                symbols[b] = null;
+            }
+            level--;
+        }
+
+        // Leaves the scopes nested inside the given level.
+        void unwind(int to) {
+            while (level > to)
+                leave();
+        }
+    }
+
+    @Override
+    Symbol lookup(int id) throws SymbolNotFoundError {
+        store.unwind(level);
+        if (level > 0) {
+            int b = store.find(id);
+            if (b >= 0)
+                return store.symbols[b];
+        }
+        Symbol sym = store.root.get(id);
+        if (sym == null)
+            throw new SymbolNotFoundError(names().name(id));
+        return sym;
+    }
+
+    @Override
+    Symbol insert(int id) throws RedeclarationError {
+        store.unwind(level);
+        if (level == 0)
+            return super.insert(id);
+        int b = store.find(id);
+        if (b >= 0 && store.levels[b] == level)
+            throw new RedeclarationError(store.symbols[b]);
+        return store.bind(id);
+    }
+
+    @Override
+    SymbolTable childTable() {
+        store.unwind(level);
+        return store.enter();
+    }
+
+    @Override
+    public SymbolTable parentTable() {
+        store.unwind(level);
+        if (level > 0)
+            store.leave();
+        return super.parentTable();
+    }
+
+    // the root's dump, without leaving any scope
+    private String globals() {
+        return super.toString();
+    }
+
+    public String toString() {
+        store.unwind(level);
+        if (level == 0)
+            return super.toString();
+        StringBuffer sb = new StringBuffer(store.root.globals());
+        for (int b = 0; b < store.bindingCount; b++) {
+            String indent = new String();
+            for (int i = 0; i < store.levels[b]; i++) {
+                indent += "  ";
+            }
+            sb.append(indent + store.symbols[b].toString() + "\n");
+        }
+        return sb.toString();
+    }
+}
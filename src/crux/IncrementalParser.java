@@ -0,0 +1,255 @@
+package crux;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/* Keeps a file parsed while it is edited. An edit lexes again only the lines
+ * it touches and parses again only the top-level declarations holding them;
+ * every other declaration keeps its ast subtree, moved to its new lines if
+ * need be. The tree and errors are always those a Parser would give for the
+ * edited text.
+ *
+ * This works while the file is all declarations with matched braces, the
+ * same pre-scan Parser.parse(ForkJoinPool) relies on. Each declaration is
+ * then parsed on its own against a view of the globals declared before it.
+ * An edit that changes which globals are declared, or leaves the file in any
+ * other shape, parses the whole (already lexed) file instead.
+ *
+ * Trees handed out earlier share nodes with the current one and do not stay
+ * valid across an edit. Errors are all kept, without scope dumps.
+ * Identifiers are interned into an InternTable of this parser's own, which
+ * goes away with it rather than growing the global one for every edit.
+ */
+public class IncrementalParser {
+
+    private final InternTable names = new InternTable(); // this session's ids
+    private char[] source;
+    private TokenBuffer tokens;
+    private ast.Command tree;
+    private Diagnostics diagnostics;
+
+    // per top-level declaration, or null when the file cannot be cut into them
+    private int[] spans;              // token it starts at; then the EOF token
+    private ast.Declaration[] decls;
+    private Diagnostics[] errors;     // what parsing it reported
+    private int[] declared;           // globals declared before it; then in all
+    private SymbolTable globals;      // all of them, for views of the first few
+
+    public IncrementalParser(char[] source) {
+        this.source = source;
+        this.tokens = TokenBuffer.lex(source, names);
+        parseAll();
+    }
+
+    public char[] source() {
+        return source;
+    }
+
+    public TokenBuffer tokens() {
+        return tokens;
+    }
+
+    public ast.Command tree() {
+        return tree;
+    }
+
+    public Diagnostics diagnostics() {
+        return diagnostics;
+    }
+
+    public String errorReport() {
+        return diagnostics.report();
+    }
+
+    public boolean hasError() {
+        return diagnostics.hasError();
+    }
+
+    // Replaces the removed characters at offset with text, and parses again.
+    public void edit(int offset, int removed, String text) {
+        if (offset < 0 || removed < 0 || offset + removed > source.length)
+            throw new IndexOutOfBoundsException("edit " + offset + "+" + removed + " of " + source.length);
+        int delta = text.length() - removed;
+        char[] edited = new char[source.length + delta];
+        System.arraycopy(source, 0, edited, 0, offset);
+        text.getChars(0, text.length(), edited, offset);
+        System.arraycopy(source, offset + removed, edited, offset + text.length(), source.length - offset - removed);
+
+        // widen to whole lines, as lexing can only start at the start of one
+        int from = offset;
+        while (from > 0 && source[from - 1] != '\n')
+            from--;
+        int to = offset + removed;
+        while (to < source.length && source[to] != '\n')
+            to++;
+        if (to < source.length)
+            to++;
+
+        TokenBuffer relexed = tokens.relex(edited, from, to, delta);
+        int first = tokens.indexAt(from);
+        int oldEnd = to == source.length ? tokens.size() : tokens.indexAt(to);
+        int newEnd = to + delta == edited.length ? relexed.size() : relexed.indexAt(to + delta);
+        int lines = newlines(text) - newlines(CharBuffer.wrap(source, offset, removed));
+
+        source = edited;
+        tokens = relexed;
+        if (spans == null || !reparse(first, oldEnd, newEnd, lines))
+            parseAll();
+    }
+
+    private static int newlines(CharSequence text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n')
+                count++;
+        }
+        return count;
+    }
+
+    // Parses every declaration again, or the whole file with a Parser when it
+    // cannot be cut into declarations.
+    private void parseAll() {
+        spans = Parser.declarationSpans(tokens);
+        if (spans != null) {
+            int count = spans.length - 1;
+            decls = new ast.Declaration[count];
+            errors = new Diagnostics[count];
+            declared = new int[count + 1];
+            SymbolTable table = Parser.predefinedScope(names);
+            for (int i = 0; i < count && spans != null; i++) {
+                declared[i] = table.size();
+                Parser part = new Parser(tokens, spans[i], Integer.MAX_VALUE);
+                decls[i] = part.parseSpan(table, spans[i + 1]);
+                errors[i] = part.diagnostics();
+                if (decls[i] == null)
+                    spans = null;
+            }
+            declared[count] = table.size();
+            globals = table;
+        }
+
+        if (spans == null) {
+            decls = null;
+            errors = null;
+            declared = null;
+            globals = null;
+            Parser parser = new Parser(tokens);
+            tree = parser.parse();
+            diagnostics = parser.diagnostics();
+        } else {
+            assemble();
+        }
+    }
+
+    /* Parses again the declarations holding tokens [first, oldEnd) of the old
+     * buffer, which are now [first, newEnd), and moves the later ones by lines.
+     * Returns false if that does not give the tree of the edited file.
+     */
+    private boolean reparse(int first, int oldEnd, int newEnd, int lines) {
+        int count = spans.length - 1;
+        if (count == 0)
+            return false;
+        int shift = newEnd - oldEnd;
+
+        // the declaration the edit starts in; an edit after the last one may extend it
+        int k0 = Arrays.binarySearch(spans, 0, count, first);
+        if (k0 < 0)
+            k0 = Math.max(0, -k0 - 2);
+
+        // cut the edited stretch into declarations until one starts where an old one did
+        int[] cut = new int[4];
+        int m = 0;
+        int at = spans[k0];
+        int k1;
+        while (true) {
+            if (at >= newEnd) {
+                int k = Arrays.binarySearch(spans, k0 + 1, count + 1, at - shift);
+                if (k >= 0) {
+                    k1 = k;
+                    break;
+                }
+            }
+            if (tokens.is(at, Token.Kind.EOF)) {
+                k1 = count;
+                break;
+            }
+            if (m == cut.length)
+                cut = Arrays.copyOf(cut, m * 2);
+            cut[m++] = at;
+            at = Parser.declarationEnd(tokens, at);
+            if (at < 0)
+                return false;
+        }
+
+        // the new declarations must declare the very globals the old ones did
+        ast.Declaration[] fresh = new ast.Declaration[m];
+        Diagnostics[] freshErrors = new Diagnostics[m];
+        int[] freshDeclared = new int[m];
+        int g = declared[k0];
+        for (int j = 0; j < m; j++) {
+            freshDeclared[j] = g;
+            SymbolTable view = globals.view(g);
+            Parser part = new Parser(tokens, cut[j], Integer.MAX_VALUE);
+            fresh[j] = part.parseSpan(view, j + 1 < m ? cut[j + 1] : at);
+            freshErrors[j] = part.diagnostics();
+            if (fresh[j] == null || view.addedSymbols())
+                return false;
+            g = view.size();
+        }
+        if (g != declared[k1])
+            return false;
+
+        // later declarations only moved; any with errors is parsed again, as
+        // their messages carry positions
+        if (lines != 0) {
+            ast.LineShifter shifter = new ast.LineShifter(lines);
+            for (int k = k1; k < count; k++) {
+                if (errors[k].hasError()) {
+                    Parser part = new Parser(tokens, spans[k] + shift, Integer.MAX_VALUE);
+                    decls[k] = part.parseSpan(globals.view(declared[k]), spans[k + 1] + shift);
+                    errors[k] = part.diagnostics();
+                    if (decls[k] == null)
+                        return false;
+                } else {
+                    ast.Walk.walk((ast.Command) decls[k], shifter);
+                }
+            }
+        }
+
+        int newCount = k0 + m + count - k1;
+        int[] newSpans = new int[newCount + 1];
+        ast.Declaration[] newDecls = new ast.Declaration[newCount];
+        Diagnostics[] newErrors = new Diagnostics[newCount];
+        int[] newDeclared = new int[newCount + 1];
+        System.arraycopy(spans, 0, newSpans, 0, k0);
+        System.arraycopy(decls, 0, newDecls, 0, k0);
+        System.arraycopy(errors, 0, newErrors, 0, k0);
+        System.arraycopy(declared, 0, newDeclared, 0, k0);
+        System.arraycopy(cut, 0, newSpans, k0, m);
+        System.arraycopy(fresh, 0, newDecls, k0, m);
+        System.arraycopy(freshErrors, 0, newErrors, k0, m);
+        System.arraycopy(freshDeclared, 0, newDeclared, k0, m);
+        for (int k = k1; k <= count; k++)
+            newSpans[k0 + m + k - k1] = spans[k] + shift;
+        System.arraycopy(decls, k1, newDecls, k0 + m, count - k1);
+        System.arraycopy(errors, k1, newErrors, k0 + m, count - k1);
+        System.arraycopy(declared, k1, newDeclared, k0 + m, count + 1 - k1);
+
+        spans = newSpans;
+        decls = newDecls;
+        errors = newErrors;
+        declared = newDeclared;
+        assemble();
+        return true;
+    }
+
+    private void assemble() {
+        ast.DeclarationList list = new ast.DeclarationList(tokens.lineNumber(0), tokens.charPosition(0));
+        diagnostics = new Diagnostics();
+        for (int i = 0; i < decls.length; i++) {
+            list.add(decls[i]);
+            diagnostics.append(errors[i]);
+        }
+        tree = list;
+    }
+}
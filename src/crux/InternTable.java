@@ -0,0 +1,123 @@
+package crux;
+
+/* Gives every distinct identifier spelling a dense integer id and one canonical
+ * String, shared by the whole compilation. Names can be interned straight from
+ * a slice of the scanner's buffer, so a name that is already known costs one
+ * hash probe and no allocation.
+ *
+ * intern() takes a lock; name() does not, and reads the names through a
+ * volatile array that intern() writes each new name into before publishing
+ * it, so any thread holding an id can read its name. The global() table lasts
+ * as long as the process; a long-lived client such as IncrementalParser keeps
+ * a table of its own instead.
+ */
+public class InternTable {
+
+    private static final InternTable global = new InternTable();
+
+    public static InternTable global() {
+        return global;
+    }
+
+    private int[] slots;    // open addressing: id + 1, or 0 when empty
+    private volatile String[] names; // canonical spelling, indexed by id
+    private int[] hashes;   // String.hashCode() of each name
+    private int size;
+
+    public InternTable() {
+        slots = new int[256];
+        names = new String[128];
+        hashes = new int[128];
+        size = 0;
+    }
+
+    private static int hash(char[] text, int offset, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++)
+            h = 31 * h + text[offset + i];
+        return h;
+    }
+
+    private static boolean sameText(String name, char[] text, int offset, int length) {
+        if (name.length() != length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != text[offset + i])
+                return false;
+        }
+        return true;
+    }
+
+    // Mixes a String.hashCode() value so that similar names spread over the slots.
+    private static int spread(int h) {
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+
+    public synchronized int intern(char[] text, int offset, int length) {
+        int h = hash(text, offset, length);
+        int mask = slots.length - 1;
+        for (int i = spread(h) & mask; ; i = (i + 1) & mask) {
+            int id = slots[i] - 1;
+            if (id < 0)
+                return add(new String(text, offset, length), h, i);
+            if (hashes[id] == h && sameText(names[id], text, offset, length))
+                return id;
+        }
+    }
+
+    public synchronized int intern(String name) {
+        int h = name.hashCode();
+        int mask = slots.length - 1;
+        for (int i = spread(h) & mask; ; i = (i + 1) & mask) {
+            int id = slots[i] - 1;
+            if (id < 0)
+                return add(name, h, i);
+            if (hashes[id] == h && names[id].equals(name))
+                return id;
+        }
+    }
+
+    private int add(String name, int h, int slot) {
+        int id = size++;
+        String[] names = this.names;
+        if (id == names.length) {
+            String[] biggerNames = new String[id * 2];
+            System.arraycopy(names, 0, biggerNames, 0, id);
+            int[] biggerHashes = new int[id * 2];
+            System.arraycopy(hashes, 0, biggerHashes, 0, id);
+            hashes = biggerHashes;
+            names = biggerNames;
+        }
+        names[id] = name;
+        this.names = names; // publishes the name to name()
+        hashes[id] = h;
+        slots[slot] = id + 1;
+
+        // keep the slot array at most half full
+        if (size * 2 > slots.length)
+            rehash();
+        return id;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int i = spread(hashes[id]) & mask;
+            while (slots[i] != 0)
+                i = (i + 1) & mask;
+            slots[i] = id + 1;
+        }
+    }
+
+    // The canonical spelling of id, which intern() handed out.
+    public String name(int id) {
+        return names[id];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
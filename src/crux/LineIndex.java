@@ -0,0 +1,90 @@
+package crux;
+
+/* The offsets at which the lines of a source file start, recorded once while
+ * the file is scanned. Tokens keep only the offset of their first character;
+ * the line and column are worked out from that here, when someone asks.
+ */
+public class LineIndex {
+
+    private int firstLine; // number of the line starting at starts[0]
+    private int[] starts;  // starts[n] is the offset of line firstLine + n
+    private int count;
+    private int recent;    // line found by the last lookup, tried first; only
+                           // a hint, so threads may look up lines concurrently
+
+    LineIndex(int firstLine, int firstStart) {
+        this.firstLine = firstLine;
+        this.starts = new int[16];
+        this.starts[0] = firstStart;
+        this.count = 1;
+        this.recent = 0;
+    }
+
+    // Records that a line starts at offset, which lies past every earlier start.
+    void add(int offset) {
+        if (count == starts.length) {
+            int[] bigger = new int[count * 2];
+            System.arraycopy(starts, 0, bigger, 0, count);
+            starts = bigger;
+        }
+        starts[count++] = offset;
+    }
+
+    // Adds the lines of other after its first, which must already be recorded here.
+    void append(LineIndex other) {
+        for (int i = 1; i < other.count; i++)
+            add(other.starts[i]);
+    }
+
+    /* The index of the file after an edit turned the stretch [from, to) into
+     * [from, to + delta), with region the index of the edited stretch as lexed
+     * again. from starts a line, so the lines starting up to it stay; those
+     * starting after it and up to to are replaced by region's past its first;
+     * the rest move along by delta.
+     */
+    LineIndex splice(int from, int to, LineIndex region, int delta) {
+        int kept = find(from) + 1;
+        int after = find(to) + 1;
+        LineIndex spliced = new LineIndex(firstLine, starts[0]);
+        spliced.starts = new int[kept + region.count - 1 + count - after];
+        System.arraycopy(starts, 0, spliced.starts, 0, kept);
+        System.arraycopy(region.starts, 1, spliced.starts, kept, region.count - 1);
+        int at = kept + region.count - 1;
+        for (int i = after; i < count; i++)
+            spliced.starts[at++] = starts[i] + delta;
+        spliced.count = at;
+        return spliced;
+    }
+
+    // index into starts of the line holding offset
+    private int find(int offset) {
+        // lookups mostly walk forward through the file, so try where the last one landed
+        int line = recent;
+        if (line < count && starts[line] <= offset && (line + 1 == count || offset < starts[line + 1]))
+            return line;
+        if (line + 1 < count && starts[line + 1] <= offset && (line + 2 == count || offset < starts[line + 2])) {
+            recent = line + 1;
+            return line + 1;
+        }
+
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= offset)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        recent = low;
+        return low;
+    }
+
+    public int lineNumber(int offset) {
+        return firstLine + find(offset);
+    }
+
+    public int charPosition(int offset) {
+        return offset - starts[find(offset)] + 1;
+    }
+}
@@ -1,6 +1,7 @@
 package crux;
 
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Set;
 
 public enum NonTerminal {
@@ -9,234 +10,114 @@ public enum NonTerminal {
     // TODO: mention that we are not doing a first set for every line in the grammar
     //       some lines have already been handled by the CruxScanner
 
-    DESIGNATOR(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            add(Token.Kind.IDENTIFIER);
-        }
-    }),
-    TYPE(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            add(Token.Kind.IDENTIFIER);
-        }
-    }),
-    LITERAL(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            add(Token.Kind.FLOAT);
-            add(Token.Kind.INTEGER);
-            add(Token.Kind.TRUE);
-            add(Token.Kind.FALSE);
-        }
-    }),
-    CALL_EXPRESSION(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            add(Token.Kind.CALL);
-        }
-    }),
-    OP0(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            add(Token.Kind.GREATER_EQUAL);
-            add(Token.Kind.LESSER_EQUAL);
-            add(Token.Kind.NOT_EQUAL);
-            add(Token.Kind.EQUAL);
-            add(Token.Kind.GREATER_THAN);
-            add(Token.Kind.LESS_THAN);
-        }
-    }),
-    OP1(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            add(Token.Kind.ADD);
-            add(Token.Kind.SUB);
-            add(Token.Kind.OR);
-        }
-    }),
-    OP2(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            add(Token.Kind.MUL);
-            add(Token.Kind.DIV);
-            add(Token.Kind.AND);
-        }
-    }),
-    EXPRESSION3(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            add(Token.Kind.NOT);
-            add(Token.Kind.OPEN_PAREN);
-            addAll(DESIGNATOR.firstSet);
-            addAll(CALL_EXPRESSION.firstSet);
-            addAll(LITERAL.firstSet);
-        }
-    }),
-    EXPRESSION2(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            addAll(EXPRESSION3.firstSet);
-        }
-    }),
-    EXPRESSION1(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            addAll(EXPRESSION2.firstSet);
-        }
-    }),
-    EXPRESSION0(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            addAll(EXPRESSION1.firstSet);
-        }
-    }),
-    EXPRESSION_LIST(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            addAll(EXPRESSION0.firstSet);
-        }
-    }),
-    PARAMETER(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            add(Token.Kind.IDENTIFIER);
-        }
-    }),
-    PARAMETER_LIST(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            addAll(PARAMETER.firstSet);
-        }
-    }),
-    VARIABLE_DECLARATION(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            add(Token.Kind.VAR);
-        }
-    }),
-    ARRAY_DECLARATION(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            add(Token.Kind.ARRAY);
-        }
-    }),
-    FUNCTION_DECLARATION(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            add(Token.Kind.FUNC);
-        }
-    }),
-    DECLARATION(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            addAll(VARIABLE_DECLARATION.firstSet);
-            addAll(ARRAY_DECLARATION.firstSet);
-            addAll(FUNCTION_DECLARATION.firstSet);
-        }
-    }),
-    DECLARATION_LIST(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            addAll(DECLARATION.firstSet);
-        }
-    }),
-    ASSIGNMENT_STATEMENT(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            add(Token.Kind.LET);
-        }
-    }),
-    CALL_STATEMENT(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            add(Token.Kind.CALL);
-        }
-    }),
-    IF_STATEMENT(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            add(Token.Kind.IF);
-        }
-    }),
-    WHILE_STATEMENT(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            add(Token.Kind.WHILE);
-        }
-    }),
-    RETURN_STATEMENT(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
+    // FIRST and FOLLOW sets are bit masks over Token.Kind.ordinal(), so testing
+    // a kind against either is a single AND (Token.Kind has fewer than 64 values)
+
+    DESIGNATOR(kinds(Token.Kind.IDENTIFIER)),
+    TYPE(kinds(Token.Kind.IDENTIFIER)),
+    LITERAL(kinds(Token.Kind.FLOAT, Token.Kind.INTEGER, Token.Kind.TRUE, Token.Kind.FALSE)),
+    CALL_EXPRESSION(kinds(Token.Kind.CALL)),
+    OP0(kinds(Token.Kind.GREATER_EQUAL, Token.Kind.LESSER_EQUAL, Token.Kind.NOT_EQUAL,
+              Token.Kind.EQUAL, Token.Kind.GREATER_THAN, Token.Kind.LESS_THAN)),
+    OP1(kinds(Token.Kind.ADD, Token.Kind.SUB, Token.Kind.OR)),
+    OP2(kinds(Token.Kind.MUL, Token.Kind.DIV, Token.Kind.AND)),
+    EXPRESSION3(kinds(Token.Kind.NOT, Token.Kind.OPEN_PAREN)
+                | DESIGNATOR.first | CALL_EXPRESSION.first | LITERAL.first),
+    EXPRESSION2(EXPRESSION3.first),
+    EXPRESSION1(EXPRESSION2.first),
+    EXPRESSION0(EXPRESSION1.first),
+    EXPRESSION_LIST(EXPRESSION0.first),
+    PARAMETER(kinds(Token.Kind.IDENTIFIER)),
+    PARAMETER_LIST(PARAMETER.first),
+    VARIABLE_DECLARATION(kinds(Token.Kind.VAR)),
+    ARRAY_DECLARATION(kinds(Token.Kind.ARRAY)),
+    FUNCTION_DECLARATION(kinds(Token.Kind.FUNC)),
+    DECLARATION(VARIABLE_DECLARATION.first | ARRAY_DECLARATION.first | FUNCTION_DECLARATION.first),
+    DECLARATION_LIST(DECLARATION.first),
+    ASSIGNMENT_STATEMENT(kinds(Token.Kind.LET)),
+    CALL_STATEMENT(kinds(Token.Kind.CALL)),
+    IF_STATEMENT(kinds(Token.Kind.IF)),
+    WHILE_STATEMENT(kinds(Token.Kind.WHILE)),
+    RETURN_STATEMENT(kinds(Token.Kind.RETURN)),
+    STATEMENT_BLOCK(kinds(Token.Kind.OPEN_BRACE)),
+    STATEMENT(VARIABLE_DECLARATION.first | ARRAY_DECLARATION.first | CALL_STATEMENT.first
+              | ASSIGNMENT_STATEMENT.first | IF_STATEMENT.first | WHILE_STATEMENT.first
+              | RETURN_STATEMENT.first),
+    STATEMENT_LIST(STATEMENT.first),
+    PROGRAM(DECLARATION_LIST.first);
+
+    // FOLLOW sets, worked out from the grammar rules in Parser
+    static {
+        PROGRAM.follow = 0L;
+        DECLARATION_LIST.follow = kinds(Token.Kind.EOF);
+        DECLARATION.follow = DECLARATION.first | DECLARATION_LIST.follow;
+        FUNCTION_DECLARATION.follow = DECLARATION.follow;
+        STATEMENT_LIST.follow = kinds(Token.Kind.CLOSE_BRACE);
+        STATEMENT.follow = STATEMENT.first | STATEMENT_LIST.follow;
+        VARIABLE_DECLARATION.follow = DECLARATION.follow | STATEMENT.follow;
+        ARRAY_DECLARATION.follow = DECLARATION.follow | STATEMENT.follow;
+        ASSIGNMENT_STATEMENT.follow = STATEMENT.follow;
+        CALL_STATEMENT.follow = STATEMENT.follow;
+        IF_STATEMENT.follow = STATEMENT.follow;
+        WHILE_STATEMENT.follow = STATEMENT.follow;
+        RETURN_STATEMENT.follow = STATEMENT.follow;
+        STATEMENT_BLOCK.follow = FUNCTION_DECLARATION.follow | STATEMENT.follow | kinds(Token.Kind.ELSE);
+
+        PARAMETER_LIST.follow = kinds(Token.Kind.CLOSE_PAREN);
+        PARAMETER.follow = kinds(Token.Kind.COMMA) | PARAMETER_LIST.follow;
+        TYPE.follow = PARAMETER.follow
+                | kinds(Token.Kind.SEMICOLON, Token.Kind.OPEN_BRACKET, Token.Kind.OPEN_BRACE);
+
+        EXPRESSION_LIST.follow = kinds(Token.Kind.CLOSE_PAREN);
+        EXPRESSION0.follow = kinds(Token.Kind.CLOSE_BRACKET, Token.Kind.COMMA, Token.Kind.CLOSE_PAREN,
+                                   Token.Kind.SEMICOLON, Token.Kind.OPEN_BRACE);
+        EXPRESSION1.follow = OP0.first | EXPRESSION0.follow;
+        EXPRESSION2.follow = OP1.first | EXPRESSION1.follow;
+        EXPRESSION3.follow = OP2.first | EXPRESSION2.follow;
+        OP0.follow = EXPRESSION1.first;
+        OP1.follow = EXPRESSION2.first;
+        OP2.follow = EXPRESSION3.first;
+        LITERAL.follow = EXPRESSION3.follow;
+        CALL_EXPRESSION.follow = EXPRESSION3.follow | kinds(Token.Kind.SEMICOLON);
+        DESIGNATOR.follow = EXPRESSION3.follow | kinds(Token.Kind.ASSIGN);
+    }
 
-        {
-            add(Token.Kind.RETURN);
-        }
-    }),
-    STATEMENT_BLOCK(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
+    private final long first;
+    private long follow;
 
-        {
-            add(Token.Kind.OPEN_BRACE);
-        }
-    }),
-    STATEMENT(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
-
-        {
-            addAll(VARIABLE_DECLARATION.firstSet);
-            addAll(ARRAY_DECLARATION.firstSet);
-            addAll(CALL_STATEMENT.firstSet);
-            addAll(ASSIGNMENT_STATEMENT.firstSet);
-            addAll(IF_STATEMENT.firstSet);
-            addAll(WHILE_STATEMENT.firstSet);
-            addAll(RETURN_STATEMENT.firstSet);
-        }
-    }),
-    STATEMENT_LIST(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
+    NonTerminal(long first) {
+        this.first = first;
+    }
 
-        {
-            addAll(STATEMENT.firstSet);
-        }
-    }),
-    PROGRAM(new HashSet<Token.Kind>() {
-        private static final long serialVersionUID = 1L;
+    static long kinds(Token.Kind... kinds) {
+        long mask = 0L;
+        for (Token.Kind kind : kinds)
+            mask |= 1L << kind.ordinal();
+        return mask;
+    }
 
-        {
-            addAll(DECLARATION_LIST.firstSet);
+    private static Set<Token.Kind> toSet(long mask) {
+        EnumSet<Token.Kind> set = EnumSet.noneOf(Token.Kind.class);
+        for (Token.Kind kind : Token.Kind.values()) {
+            if ((mask & (1L << kind.ordinal())) != 0)
+                set.add(kind);
         }
-    });
+        return Collections.unmodifiableSet(set);
+    }
 
-    public final HashSet<Token.Kind> firstSet = new HashSet<Token.Kind>();
+    public boolean firstContains(Token.Kind kind) {
+        return (first & (1L << kind.ordinal())) != 0;
+    }
 
-    NonTerminal(HashSet<Token.Kind> t) {
-        firstSet.addAll(t);
+    public boolean followContains(Token.Kind kind) {
+        return (follow & (1L << kind.ordinal())) != 0;
     }
 
     public final Set<Token.Kind> firstSet() {
-        return firstSet;
+        return toSet(first);
+    }
+
+    public final Set<Token.Kind> followSet() {
+        return toSet(follow);
     }
 }
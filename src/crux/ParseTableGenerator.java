@@ -0,0 +1,355 @@
+package crux;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/* Reads a grammar in the form crux.grammar documents and writes the Java
+ * source of its LL(1) tables, as ParseTables:
+ *  - symbols are ints: Token.Kind ordinals first, then the nonterminals from
+ *    FIRST_NONTERMINAL, then the actions from FIRST_ACTION
+ *  - PREDICT[n * TERMINALS + kind] is the production nonterminal n expands to
+ *    on lookahead kind, or -1 for a syntax error
+ *  - RHS[RHS_START[p], RHS_START[p + 1]) is production p's right-hand side,
+ *    reversed, so a parser pushes it onto its stack with one arraycopy
+ * A grammar that is not LL(1) is reported and nothing is written.
+ *
+ *     java crux.ParseTableGenerator src/crux/crux.grammar src/crux/ParseTables.java
+ */
+public class ParseTableGenerator {
+
+    private static final Token.Kind[] KINDS = Token.Kind.values();
+    private static final int TERMINALS = KINDS.length;
+
+    private final List<String> nonterminals = new ArrayList<String>();
+    private final List<String> actions = new ArrayList<String>();
+    private final List<Integer> lefts = new ArrayList<Integer>();  // per production
+    private final List<int[]> rights = new ArrayList<int[]>();     // per production, in order
+    private final List<String> texts = new ArrayList<String>();    // per production, as written
+
+    private boolean[] nullable;
+    private BitSet[] first;
+    private BitSet[] follow;
+    private int[] predict;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: ParseTableGenerator <grammar> <output .java>");
+            System.exit(-1);
+        }
+        String grammar = new String(Files.readAllBytes(Paths.get(args[0])), "UTF-8");
+        ParseTableGenerator generator = new ParseTableGenerator();
+        try {
+            generator.read(grammar);
+            generator.analyze();
+        } catch (IllegalArgumentException e) {
+            System.err.println(args[0] + ": " + e.getMessage());
+            System.exit(-2);
+        }
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(args[1]), "UTF-8"));
+        try {
+            generator.write(out, Paths.get(args[0]).getFileName().toString());
+        } finally {
+            out.close();
+        }
+    }
+
+    // Reading ==========================================
+
+    private int nonterminal(String name) {
+        int index = nonterminals.indexOf(name);
+        if (index < 0) {
+            nonterminals.add(name);
+            index = nonterminals.size() - 1;
+        }
+        return index;
+    }
+
+    private int action(String name) {
+        int index = actions.indexOf(name);
+        if (index < 0) {
+            actions.add(name);
+            index = actions.size() - 1;
+        }
+        return index;
+    }
+
+    private static int terminal(String word) {
+        if (word.startsWith("\"")) {
+            String lexeme = word.substring(1, word.length() - 1);
+            for (Token.Kind kind : KINDS) {
+                if (kind.hasStaticLexeme() && kind.default_lexeme.equals(lexeme))
+                    return kind.ordinal();
+            }
+            throw new IllegalArgumentException("no token kind has lexeme " + word);
+        }
+        try {
+            return Token.Kind.valueOf(word).ordinal();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("no token kind is named " + word);
+        }
+    }
+
+    // Symbols are kept while reading as terminals >= 0, nonterminals as
+    // -1 - index and actions as Integer.MIN_VALUE + index, and renumbered
+    // once the counts are known.
+    private void read(String grammar) {
+        List<String> words = words(grammar);
+        int i = 0;
+        while (i < words.size()) {
+            String name = words.get(i++);
+            if (!Character.isLowerCase(name.charAt(0)) || i == words.size() || !words.get(i++).equals(":="))
+                throw new IllegalArgumentException("expected a rule at " + name);
+            int left = nonterminal(name);
+            List<Integer> right = new ArrayList<Integer>();
+            StringBuilder text = new StringBuilder(name).append(" :=");
+            while (true) {
+                if (i == words.size())
+                    throw new IllegalArgumentException("rule " + name + " does not end with '.'");
+                String word = words.get(i++);
+                if (word.equals("|") || word.equals(".")) {
+                    addProduction(left, right, text.toString());
+                    right.clear();
+                    text.setLength(0);
+                    text.append(name).append(" :=");
+                    if (word.equals("."))
+                        break;
+                    continue;
+                }
+                text.append(' ').append(word);
+                if (word.startsWith("#"))
+                    right.add(Integer.MIN_VALUE + action(word.substring(1)));
+                else if (Character.isLowerCase(word.charAt(0)))
+                    right.add(-1 - nonterminal(word));
+                else
+                    right.add(terminal(word));
+            }
+        }
+        if (nonterminals.isEmpty())
+            throw new IllegalArgumentException("no rules");
+
+        // renumber into the final encoding
+        int firstAction = TERMINALS + nonterminals.size();
+        for (int[] right : rights) {
+            for (int j = 0; j < right.length; j++) {
+                if (right[j] < -1 - Integer.MAX_VALUE / 2)
+                    right[j] = firstAction + (right[j] - Integer.MIN_VALUE);
+                else if (right[j] < 0)
+                    right[j] = TERMINALS + (-1 - right[j]);
+            }
+        }
+        BitSet defined = new BitSet();
+        for (int left : lefts)
+            defined.set(left);
+        for (int n = 0; n < nonterminals.size(); n++) {
+            if (!defined.get(n))
+                throw new IllegalArgumentException("no rule for " + nonterminals.get(n));
+        }
+    }
+
+    private void addProduction(int left, List<Integer> right, String text) {
+        int[] symbols = new int[right.size()];
+        for (int j = 0; j < symbols.length; j++)
+            symbols[j] = right.get(j);
+        lefts.add(left);
+        rights.add(symbols);
+        texts.add(text);
+    }
+
+    private static List<String> words(String grammar) {
+        List<String> words = new ArrayList<String>();
+        int i = 0;
+        while (i < grammar.length()) {
+            char c = grammar.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (grammar.startsWith("//", i)) {
+                while (i < grammar.length() && grammar.charAt(i) != '\n')
+                    i++;
+            } else if (c == '"') {
+                int end = grammar.indexOf('"', i + 1);
+                if (end < 0)
+                    throw new IllegalArgumentException("unterminated " + grammar.substring(i));
+                words.add(grammar.substring(i, end + 1));
+                i = end + 1;
+            } else if (grammar.startsWith(":=", i)) {
+                words.add(":=");
+                i += 2;
+            } else if (c == '|' || c == '.') {
+                words.add(String.valueOf(c));
+                i++;
+            } else {
+                int start = i;
+                while (i < grammar.length() && (Character.isLetterOrDigit(grammar.charAt(i))
+                        || "#-_".indexOf(grammar.charAt(i)) >= 0))
+                    i++;
+                if (i == start)
+                    throw new IllegalArgumentException("unexpected '" + c + "'");
+                words.add(grammar.substring(start, i));
+            }
+        }
+        return words;
+    }
+
+    // Analysis ==========================================
+
+    private boolean isNonterminal(int symbol) {
+        return symbol >= TERMINALS && symbol < TERMINALS + nonterminals.size();
+    }
+
+    private boolean isAction(int symbol) {
+        return symbol >= TERMINALS + nonterminals.size();
+    }
+
+    // Adds FIRST(right[from..]) to set; returns whether that part derives nothing.
+    private boolean firstOf(int[] right, int from, BitSet set) {
+        for (int j = from; j < right.length; j++) {
+            int symbol = right[j];
+            if (isAction(symbol))
+                continue;
+            if (!isNonterminal(symbol)) {
+                set.set(symbol);
+                return false;
+            }
+            set.or(first[symbol - TERMINALS]);
+            if (!nullable[symbol - TERMINALS])
+                return false;
+        }
+        return true;
+    }
+
+    private void analyze() {
+        int count = nonterminals.size();
+        nullable = new boolean[count];
+        first = new BitSet[count];
+        follow = new BitSet[count];
+        for (int n = 0; n < count; n++) {
+            first[n] = new BitSet();
+            follow[n] = new BitSet();
+        }
+        follow[0].set(Token.Kind.EOF.ordinal());
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int p = 0; p < rights.size(); p++) {
+                int left = lefts.get(p);
+                int[] right = rights.get(p);
+                int before = first[left].cardinality();
+                boolean empty = firstOf(right, 0, first[left]);
+                if (empty && !nullable[left]) {
+                    nullable[left] = true;
+                    changed = true;
+                }
+                if (first[left].cardinality() != before)
+                    changed = true;
+
+                for (int j = 0; j < right.length; j++) {
+                    if (!isNonterminal(right[j]))
+                        continue;
+                    BitSet set = follow[right[j] - TERMINALS];
+                    int size = set.cardinality();
+                    if (firstOf(right, j + 1, set))
+                        set.or(follow[left]);
+                    if (set.cardinality() != size)
+                        changed = true;
+                }
+            }
+        }
+
+        predict = new int[count * TERMINALS];
+        for (int i = 0; i < predict.length; i++)
+            predict[i] = -1;
+        StringBuilder conflicts = new StringBuilder();
+        for (int p = 0; p < rights.size(); p++) {
+            int left = lefts.get(p);
+            BitSet lookahead = new BitSet();
+            if (firstOf(rights.get(p), 0, lookahead))
+                lookahead.or(follow[left]);
+            for (int kind = lookahead.nextSetBit(0); kind >= 0; kind = lookahead.nextSetBit(kind + 1)) {
+                int entry = left * TERMINALS + kind;
+                if (predict[entry] >= 0) {
+                    conflicts.append("\n  on ").append(KINDS[kind]).append(": ")
+                             .append(texts.get(predict[entry])).append("  versus  ").append(texts.get(p));
+                } else {
+                    predict[entry] = p;
+                }
+            }
+        }
+        if (conflicts.length() > 0)
+            throw new IllegalArgumentException("not LL(1):" + conflicts);
+    }
+
+    // Output ==========================================
+
+    private static String constant(String action) {
+        return action.toUpperCase().replace('-', '_');
+    }
+
+    private void write(PrintWriter out, String source) {
+        int count = nonterminals.size();
+        out.println("package crux;");
+        out.println();
+        out.println("// Generated by ParseTableGenerator from " + source + "; do not edit.");
+        out.println("final class ParseTables {");
+        out.println();
+        out.println("    static final int TERMINALS = " + TERMINALS + ";");
+        out.println("    static final int FIRST_NONTERMINAL = " + TERMINALS + ";");
+        out.println("    static final int FIRST_ACTION = " + (TERMINALS + count) + ";");
+        out.println("    static final int START = " + TERMINALS + "; // " + nonterminals.get(0));
+        out.println();
+
+        out.println("    // actions, numbered from FIRST_ACTION");
+        for (int a = 0; a < actions.size(); a++)
+            out.println("    static final int " + constant(actions.get(a)) + " = " + a + ";");
+        out.println();
+
+        out.println("    static final String[] NONTERMINALS = {");
+        for (int n = 0; n < count; n++)
+            out.println("        \"" + nonterminals.get(n) + "\",");
+        out.println("    };");
+        out.println();
+
+        out.println("    static final int[] PREDICT = {");
+        for (int n = 0; n < count; n++) {
+            StringBuilder row = new StringBuilder("        ");
+            for (int kind = 0; kind < TERMINALS; kind++)
+                row.append(predict[n * TERMINALS + kind]).append(", ");
+            out.println(row.toString().replaceAll(" $", "") + " // " + nonterminals.get(n));
+        }
+        out.println("    };");
+        out.println();
+
+        out.println("    static final int[] RHS = {");
+        for (int p = 0; p < rights.size(); p++) {
+            int[] right = rights.get(p);
+            StringBuilder row = new StringBuilder("        ");
+            for (int j = right.length - 1; j >= 0; j--)
+                row.append(right[j]).append(", ");
+            out.println(row.toString() + "// " + p + ": " + texts.get(p));
+        }
+        out.println("    };");
+        out.println();
+
+        out.println("    static final int[] RHS_START = {");
+        StringBuilder starts = new StringBuilder("        ");
+        int at = 0;
+        for (int p = 0; p < rights.size(); p++) {
+            starts.append(at).append(", ");
+            at += rights.get(p).length;
+        }
+        out.println(starts.append(at));
+        out.println("    };");
+        out.println();
+
+        out.println("    private ParseTables() {");
+        out.println("    }");
+        out.println("}");
+    }
+}
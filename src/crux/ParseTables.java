@@ -0,0 +1,212 @@
+package crux;
+
+// Generated by ParseTableGenerator from crux.grammar; do not edit.
+final class ParseTables {
+
+    static final int TERMINALS = 39;
+    static final int FIRST_NONTERMINAL = 39;
+    static final int FIRST_ACTION = 77;
+    static final int START = 39; // program
+
+    // actions, numbered from FIRST_ACTION
+    static final int DECLARATIONS = 0;
+    static final int ADD_DECLARATION = 1;
+    static final int MARK = 2;
+    static final int DECLARE = 3;
+    static final int SET_TYPE = 4;
+    static final int VARIABLE = 5;
+    static final int DIMENSION = 6;
+    static final int ARRAY = 7;
+    static final int ENTER_SCOPE = 8;
+    static final int PARAMETERS = 9;
+    static final int SIGNATURE = 10;
+    static final int EXIT_SCOPE = 11;
+    static final int FUNCTION = 12;
+    static final int ADD_PARAMETER = 13;
+    static final int TYPE = 14;
+    static final int STATEMENTS = 15;
+    static final int ADD_STATEMENT = 16;
+    static final int NO_STATEMENTS = 17;
+    static final int ASSIGNMENT = 18;
+    static final int IF = 19;
+    static final int EMPTY_BLOCK = 20;
+    static final int WHILE = 21;
+    static final int RETURN = 22;
+    static final int BINARY = 23;
+    static final int NOT = 24;
+    static final int DEREFERENCE = 25;
+    static final int ADDRESS = 26;
+    static final int INDEX = 27;
+    static final int RESOLVE = 28;
+    static final int CALL = 29;
+    static final int EXPRESSIONS = 30;
+    static final int ADD_EXPRESSION = 31;
+    static final int LITERAL = 32;
+
+    static final String[] NONTERMINALS = {
+        "program",
+        "declaration-list",
+        "declaration",
+        "variable-declaration",
+        "array-declaration",
+        "function-definition",
+        "type",
+        "dimensions",
+        "parameter-list",
+        "statement-block",
+        "parameter",
+        "more-parameters",
+        "statement-list",
+        "statement",
+        "more-statements",
+        "call-statement",
+        "assignment-statement",
+        "if-statement",
+        "while-statement",
+        "return-statement",
+        "call-expression",
+        "designator",
+        "expression0",
+        "else-block",
+        "expression1",
+        "comparison",
+        "op0",
+        "expression2",
+        "more-terms",
+        "op1",
+        "expression3",
+        "more-factors",
+        "op2",
+        "literal",
+        "indexes",
+        "expression-list",
+        "arguments",
+        "more-arguments",
+    };
+
+    static final int[] PREDICT = {
+        -1, -1, -1, -1, 0, 0, 0, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 0, // program
+        -1, -1, -1, -1, 1, 1, 1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 2, // declaration-list
+        -1, -1, -1, -1, 3, 4, 5, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, // declaration
+        -1, -1, -1, -1, 6, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, // variable-declaration
+        -1, -1, -1, -1, -1, 7, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, // array-declaration
+        -1, -1, -1, -1, -1, -1, 10, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, // function-definition
+        -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 16, -1, -1, -1, -1, // type
+        -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 8, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 9, -1, -1, -1, -1, -1, -1, -1, // dimensions
+        -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 12, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 11, -1, -1, -1, -1, // parameter-list
+        -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 17, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, // statement-block
+        -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 15, -1, -1, -1, -1, // parameter
+        -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 14, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 13, -1, -1, -1, -1, -1, -1, -1, -1, // more-parameters
+        -1, -1, -1, 18, 18, 18, -1, -1, -1, 18, -1, 18, 18, -1, -1, -1, 19, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 18, -1, -1, -1, -1, -1, // statement-list
+        -1, -1, -1, 25, 22, 23, -1, -1, -1, 26, -1, 27, 28, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 24, -1, -1, -1, -1, -1, // statement
+        -1, -1, -1, 20, 20, 20, -1, -1, -1, 20, -1, 20, 20, -1, -1, -1, 21, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 20, -1, -1, -1, -1, -1, // more-statements
+        -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 29, -1, -1, -1, -1, -1, // call-statement
+        -1, -1, -1, 30, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, // assignment-statement
+        -1, -1, -1, -1, -1, -1, -1, -1, -1, 31, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, // if-statement
+        -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 34, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, // while-statement
+        -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 35, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, // return-statement
+        -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 65, -1, -1, -1, -1, -1, // call-expression
+        -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 62, -1, -1, -1, -1, // designator
+        -1, -1, 36, -1, -1, -1, -1, 36, 36, -1, -1, -1, -1, 36, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 36, 36, 36, 36, -1, -1, // expression0
+        -1, -1, -1, 33, 33, 33, -1, -1, -1, 33, 32, 33, 33, -1, -1, -1, 33, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 33, -1, -1, -1, -1, -1, // else-block
+        -1, -1, 45, -1, -1, -1, -1, 45, 45, -1, -1, -1, -1, 45, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 45, 45, 45, 45, -1, -1, // expression1
+        -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 38, 38, -1, -1, 38, -1, -1, -1, -1, 37, 37, 37, 37, 37, 37, -1, 38, 38, -1, -1, -1, -1, -1, -1, -1, // comparison
+        -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 39, 40, 41, 42, 43, 44, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, // op0
+        -1, -1, 51, -1, -1, -1, -1, 51, 51, -1, -1, -1, -1, 51, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 51, 51, 51, 51, -1, -1, // expression2
+        -1, 46, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 47, 47, -1, -1, 47, 46, 46, -1, -1, 47, 47, 47, 47, 47, 47, -1, 47, 47, -1, -1, -1, -1, -1, -1, -1, // more-terms
+        -1, 50, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 48, 49, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, // op1
+        -1, -1, 57, -1, -1, -1, -1, 61, 61, -1, -1, -1, -1, 58, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 60, 59, 61, 61, -1, -1, // expression3
+        52, 53, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 53, 53, -1, -1, 53, 53, 53, 52, 52, 53, 53, 53, 53, 53, 53, -1, 53, 53, -1, -1, -1, -1, -1, -1, -1, // more-factors
+        56, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 54, 55, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, // op2
+        -1, -1, -1, -1, -1, -1, -1, 73, 74, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 71, 72, -1, -1, // literal
+        64, 64, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 64, 64, -1, 63, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, -1, -1, -1, -1, -1, -1, -1, // indexes
+        -1, -1, 66, -1, -1, -1, -1, 66, 66, -1, -1, -1, -1, 66, 66, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 66, 66, 66, 66, -1, -1, // expression-list
+        -1, -1, 67, -1, -1, -1, -1, 67, 67, -1, -1, -1, -1, 67, 68, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 67, 67, 67, 67, -1, -1, // arguments
+        -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 70, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 69, -1, -1, -1, -1, -1, -1, -1, -1, // more-arguments
+    };
+
+    static final int[] RHS = {
+        38, 40, 77, // 0: program := #declarations declaration-list EOF
+        40, 78, 41, // 1: declaration-list := declaration #add-declaration declaration-list
+        // 2: declaration-list :=
+        42, // 3: declaration := variable-declaration
+        43, // 4: declaration := array-declaration
+        44, // 5: declaration := function-definition
+        82, 31, 81, 45, 32, 80, 34, 4, 79, // 6: variable-declaration := #mark "var" IDENTIFIER #declare ":" type #set-type ";" #variable
+        84, 31, 46, 18, 83, 35, 17, 81, 45, 32, 80, 34, 5, 79, // 7: array-declaration := #mark "array" IDENTIFIER #declare ":" type #set-type "[" INTEGER #dimension "]" dimensions ";" #array
+        46, 18, 83, 35, 17, // 8: dimensions := "[" INTEGER #dimension "]" dimensions
+        // 9: dimensions :=
+        89, 88, 48, 87, 45, 32, 14, 47, 86, 85, 13, 80, 34, 6, 79, // 10: function-definition := #mark "func" IDENTIFIER #declare "(" #enter-scope #parameters parameter-list ")" ":" type #signature statement-block #exit-scope #function
+        50, 49, // 11: parameter-list := parameter more-parameters
+        // 12: parameter-list :=
+        50, 49, 30, // 13: more-parameters := "," parameter more-parameters
+        // 14: more-parameters :=
+        90, 81, 45, 32, 80, 34, // 15: parameter := IDENTIFIER #declare ":" type #set-type #add-parameter
+        91, 34, // 16: type := IDENTIFIER #type
+        16, 51, 15, 79, // 17: statement-block := #mark "{" statement-list "}"
+        53, 93, 52, 92, // 18: statement-list := #statements statement #add-statement more-statements
+        94, // 19: statement-list := #no-statements
+        53, 93, 52, // 20: more-statements := statement #add-statement more-statements
+        // 21: more-statements :=
+        42, // 22: statement := variable-declaration
+        43, // 23: statement := array-declaration
+        54, // 24: statement := call-statement
+        55, // 25: statement := assignment-statement
+        56, // 26: statement := if-statement
+        57, // 27: statement := while-statement
+        58, // 28: statement := return-statement
+        31, 59, // 29: call-statement := call-expression ";"
+        95, 31, 61, 29, 60, 3, 79, // 30: assignment-statement := #mark "let" designator "=" expression0 ";" #assignment
+        96, 62, 88, 48, 85, 61, 9, 79, // 31: if-statement := #mark "if" expression0 #enter-scope statement-block #exit-scope else-block #if
+        88, 48, 85, 10, // 32: else-block := "else" #enter-scope statement-block #exit-scope
+        97, // 33: else-block := #empty-block
+        98, 88, 48, 85, 61, 11, 79, // 34: while-statement := #mark "while" expression0 #enter-scope statement-block #exit-scope #while
+        99, 31, 61, 12, 79, // 35: return-statement := #mark "return" expression0 ";" #return
+        64, 63, // 36: expression0 := expression1 comparison
+        100, 63, 65, 79, // 37: comparison := #mark op0 expression1 #binary
+        // 38: comparison :=
+        23, // 39: op0 := ">="
+        24, // 40: op0 := "<="
+        25, // 41: op0 := "!="
+        26, // 42: op0 := "=="
+        27, // 43: op0 := ">"
+        28, // 44: op0 := "<"
+        67, 66, // 45: expression1 := expression2 more-terms
+        67, 100, 66, 68, 79, // 46: more-terms := #mark op1 expression2 #binary more-terms
+        // 47: more-terms :=
+        19, // 48: op1 := "+"
+        20, // 49: op1 := "-"
+        1, // 50: op1 := "or"
+        70, 69, // 51: expression2 := expression3 more-factors
+        70, 100, 69, 71, 79, // 52: more-factors := #mark op2 expression3 #binary more-factors
+        // 53: more-factors :=
+        21, // 54: op2 := "*"
+        22, // 55: op2 := "/"
+        0, // 56: op2 := "and"
+        101, 69, 2, 79, // 57: expression3 := #mark "not" expression3 #not
+        14, 61, 13, // 58: expression3 := "(" expression0 ")"
+        102, 60, 79, // 59: expression3 := #mark designator #dereference
+        59, // 60: expression3 := call-expression
+        72, // 61: expression3 := literal
+        73, 103, 34, // 62: designator := IDENTIFIER #address indexes
+        73, 104, 18, 61, 79, 17, // 63: indexes := "[" #mark expression0 "]" #index indexes
+        // 64: indexes :=
+        106, 14, 74, 13, 105, 34, 33, 79, // 65: call-expression := #mark "::" IDENTIFIER #resolve "(" expression-list ")" #call
+        75, 107, // 66: expression-list := #expressions arguments
+        76, 108, 61, // 67: arguments := expression0 #add-expression more-arguments
+        // 68: arguments :=
+        76, 108, 61, 30, // 69: more-arguments := "," expression0 #add-expression more-arguments
+        // 70: more-arguments :=
+        109, 35, // 71: literal := INTEGER #literal
+        109, 36, // 72: literal := FLOAT #literal
+        109, 7, // 73: literal := TRUE #literal
+        109, 8, // 74: literal := FALSE #literal
+    };
+
+    static final int[] RHS_START = {
+        0, 3, 6, 6, 7, 8, 9, 18, 32, 37, 37, 52, 54, 54, 57, 57, 63, 65, 69, 73, 74, 77, 77, 78, 79, 80, 81, 82, 83, 84, 86, 93, 101, 105, 106, 113, 118, 120, 124, 124, 125, 126, 127, 128, 129, 130, 132, 137, 137, 138, 139, 140, 142, 147, 147, 148, 149, 150, 154, 157, 160, 161, 162, 165, 171, 171, 179, 181, 184, 184, 188, 188, 190, 192, 194, 196
+    };
+
+    private ParseTables() {
+    }
+}
@@ -1,8 +1,12 @@
 package crux;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import types.*;
 
@@ -13,134 +17,233 @@ public class Parser {
 
     // Grammar Rule Reporting ==========================================
     private int parseTreeRecursionDepth = 0;
-    private StringBuffer parseTreeBuffer = new StringBuffer();
+    private Appendable parseTreeSink = null; // no tracing while null
+
+    // Streams the parse tree to sink, one indented line per rule entered, for
+    // the rest of the parse. Tracing is off unless this is called.
+    public void traceParseTree(Appendable sink) {
+        parseTreeSink = sink;
+    }
 
     public void enterRule(NonTerminal nonTerminal) {
-        String lineData = new String();
-        for (int i = 0; i < parseTreeRecursionDepth; i++) {
-            lineData += "  ";
-        }
-        lineData += nonTerminal.name();
-        //System.out.println("descending " + lineData);
-        parseTreeBuffer.append(lineData + "\n");
+        traceRule(nonTerminal, parseTreeRecursionDepth);
         parseTreeRecursionDepth++;
     }
 
+    // Traces nonTerminal as entered at depth. The expressions and blocks kept
+    // on an explicit stack track their depths themselves, so call this direct.
+    private void traceRule(NonTerminal nonTerminal, int depth) {
+        if (parseTreeSink == null)
+            return;
+        try {
+            for (int i = 0; i < depth; i++)
+                parseTreeSink.append("  ");
+            parseTreeSink.append(nonTerminal.name()).append('\n');
+        } catch (IOException e) {
+            parseTreeSink = null; // a broken sink just ends the trace
+        }
+    }
+
     private void exitRule(NonTerminal nonTerminal) {
         parseTreeRecursionDepth--;
     }
 
+    // The trace so far when tracing into a StringBuilder or similar sink,
+    // or "" when tracing is off.
     public String parseTreeReport() {
-        return parseTreeBuffer.toString();
+        return parseTreeSink == null ? "" : parseTreeSink.toString();
     }
 
     // Error Reporting ==========================================
-    private StringBuffer errorBuffer = new StringBuffer();
+    private Diagnostics diagnostics = new Diagnostics();
+    private int tokensConsumed = 0;
+    private int lastRecovery = -1; // tokensConsumed after the last error recovery
 
-    private String reportSyntaxError(NonTerminal nt) {
-        String message = "SyntaxError(" + lineNumber() + "," + charPosition() + ")[Expected a token from " + nt.name() + " but got " + currentToken.kind() + ".]";
-        errorBuffer.append(message + "\n");
-        return message;
+    private Diagnostic reportSyntaxError(NonTerminal nt) {
+        return syntaxError("Expected a token from ", nt.name(), " but got ", currentKind(), ".");
     }
 
-    private String reportSyntaxError(Token.Kind kind) {
-        String message = "SyntaxError(" + lineNumber() + "," + charPosition() + ")[Expected " + kind + " but got " + currentToken.kind() + ".]";
-        errorBuffer.append(message + "\n");
-        return message;
+    private Diagnostic reportSyntaxError(Token.Kind kind) {
+        return syntaxError("Expected ", kind, " but got ", currentKind(), ".");
+    }
+
+    // An error at the very token recovery stopped on is a knock-on effect of
+    // the one recovered from (an enclosing block missing its '}', say), so it
+    // is not reported again. It and any error over the limit are not kept,
+    // but still stand in the tree as an Error, so those are built here; none
+    // is formatted until read.
+    private Diagnostic syntaxError(Object... message) {
+        int lineNum = lineNumber();
+        int charPos = charPosition();
+        Diagnostic diagnostic = null;
+        if (lastRecovery != tokensConsumed)
+            diagnostic = diagnostics.report(Diagnostic.Code.SYNTAX, lineNum, charPos, message);
+        if (diagnostic == null)
+            diagnostic = new Diagnostic(Diagnostic.Code.SYNTAX, lineNum, charPos, message);
+        return diagnostic;
     }
 
     public String errorReport() {
-        return errorBuffer.toString();
+        return diagnostics.report();
     }
 
     public boolean hasError() {
-        return errorBuffer.length() != 0;
+        return diagnostics.hasError();
+    }
+
+    // where syntax and symbol errors go; configure error limits or scope dumps here
+    public Diagnostics diagnostics() {
+        return diagnostics;
     }
 
     private class QuitParseException extends RuntimeException {
         private static final long serialVersionUID = 1L;
 
-        public QuitParseException(String errorMessage) {
-            super(errorMessage);
+        private final Diagnostic diagnostic;
+
+        public QuitParseException(Diagnostic diagnostic) {
+            this.diagnostic = diagnostic;
+        }
+
+        public Diagnostic diagnostic() {
+            return diagnostic;
+        }
+
+        // formatted only when asked for
+        @Override
+        public String getMessage() {
+            return diagnostic.toString();
         }
     }
 
     private int lineNumber() {
-        return currentToken.lineNumber();
+        if (tokens != null)
+            return tokens.lineNumber(cursor);
+        return ring.lineNumber(0);
     }
 
     private int charPosition() {
-        return currentToken.charPosition();
+        if (tokens != null)
+            return tokens.charPosition(cursor);
+        return ring.charPosition(0);
     }
 
     // SymbolTable Management ==========================
     private SymbolTable symbolTable;
 
+    private boolean flatScopes = false;
+
+    // Has the parse keep its scopes in a FlatSymbolTable, which enters and
+    // leaves scopes without a table of their own, instead of a SymbolTable
+    // chain. The tree and errors are the same either way.
+    public void useFlatScopes(boolean flatScopes) {
+        this.flatScopes = flatScopes;
+    }
+
+    private SymbolTable globalScope() {
+        InternTable names = tokens != null ? tokens.names() : InternTable.global();
+        return predefine(flatScopes ? new FlatSymbolTable(names) : new SymbolTable(names));
+    }
+
     private void initSymbolTable() {
-        symbolTable = new SymbolTable();
+        symbolTable = globalScope();
+    }
+
+    // a global scope holding just the built-in functions
+    static SymbolTable predefinedScope() {
+        return predefinedScope(InternTable.global());
+    }
+
+    // the same, over the ids of names
+    static SymbolTable predefinedScope(InternTable names) {
+        return predefine(new SymbolTable(names));
+    }
+
+    // declares the built-in functions in an empty global scope
+    private static SymbolTable predefine(SymbolTable symbolTable) {
         Symbol s = symbolTable.insert("readInt");
-        s.setType(new FuncType(new TypeList(), new IntType()));
+        s.setType(TypeTable.func(TypeTable.EMPTY_LIST, TypeTable.INT));
 
         s = symbolTable.insert("readFloat");
-        s.setType(new FuncType(new TypeList(), new FloatType()));
+        s.setType(TypeTable.func(TypeTable.EMPTY_LIST, TypeTable.FLOAT));
 
         s = symbolTable.insert("printBool");
-        TypeList args = new TypeList();
-        args.append(new BoolType());
-        s.setType(new FuncType(args, new VoidType()));
+        s.setType(TypeTable.func(TypeTable.append(TypeTable.EMPTY_LIST, TypeTable.BOOL), TypeTable.VOID));
 
         s = symbolTable.insert("printInt");
-        args = new TypeList();
-        args.append(new IntType());
-        s.setType(new FuncType(args, new VoidType()));
+        s.setType(TypeTable.func(TypeTable.append(TypeTable.EMPTY_LIST, TypeTable.INT), TypeTable.VOID));
 
         s = symbolTable.insert("printFloat");
-        args = new TypeList();
-        args.append(new FloatType());
-        s.setType(new FuncType(args, new VoidType()));
+        s.setType(TypeTable.func(TypeTable.append(TypeTable.EMPTY_LIST, TypeTable.FLOAT), TypeTable.VOID));
 
         s = symbolTable.insert("println");
-        s.setType(new FuncType(new TypeList(), new VoidType()));
+        s.setType(TypeTable.func(TypeTable.EMPTY_LIST, TypeTable.VOID));
+        return symbolTable;
     }
 
     private void enterScope() {
-        symbolTable = new SymbolTable(symbolTable);
+        symbolTable = symbolTable.childTable();
     }
 
     private void exitScope() {
         symbolTable = symbolTable.parentTable();
     }
 
-    private Symbol tryResolveSymbol(String name) {
+    private Symbol tryResolveSymbol(int id) {
+        return resolveSymbol(symbolTable, id, diagnostics, lineNumber(), charPosition());
+    }
+
+    private Symbol tryDeclareSymbol(int id) {
+        return declareSymbol(symbolTable, id, diagnostics, lineNumber(), charPosition());
+    }
+
+    // Looks id up in scope, or reports it at lineNum and charPos and stands in
+    // an ErrorSymbol; shared with TableParser, so the two report alike.
+    static Symbol resolveSymbol(SymbolTable scope, int id, Diagnostics diagnostics, int lineNum, int charPos) {
         try {
-            return symbolTable.lookup(name);
+            return scope.lookup(id);
         } catch (SymbolNotFoundError e) {
-            String message = reportResolveSymbolError(name);
-            return new ErrorSymbol(message);
+            return errorSymbol(diagnostics, Diagnostic.Code.RESOLVE_SYMBOL, lineNum, charPos, scope,
+                    "Could not find ", e.name(), ".");
         }
     }
 
-    private String reportResolveSymbolError(String name) {
-        String message = "ResolveSymbolError(" + lineNumber() + "," + charPosition() + ")[Could not find " + name + ".]";
-        errorBuffer.append(message + "\n");
-        errorBuffer.append(symbolTable.toString() + "\n");
-        return message;
-    }
-
-    private Symbol tryDeclareSymbol(String name) {
+    // Declares id in scope, or reports it as declared already.
+    static Symbol declareSymbol(SymbolTable scope, int id, Diagnostics diagnostics, int lineNum, int charPos) {
         try {
-            return symbolTable.insert(name);
+            return scope.insert(id);
         } catch (RedeclarationError re) {
-            String message = reportDeclareSymbolError(name);
-            return new ErrorSymbol(message);
+            return errorSymbol(diagnostics, Diagnostic.Code.DECLARE_SYMBOL, lineNum, charPos, scope,
+                    scope.names().name(id), " already exists.");
         }
     }
 
-    private String reportDeclareSymbolError(String name) {
-        String message = "DeclareSymbolError(" + lineNumber() + "," + charPosition() + ")[" + name + " already exists.]";
-        errorBuffer.append(message + "\n");
-        errorBuffer.append(symbolTable.toString() + "\n");
-        return message;
+    // Reports a symbol error and stands in an ErrorSymbol for it. One over the
+    // limit is not kept but still names the symbol, so it is built here, and
+    // formatted only if that name is read.
+    private static Symbol errorSymbol(Diagnostics diagnostics, Diagnostic.Code code, int lineNum, int charPos,
+            SymbolTable scope, Object... message) {
+        Diagnostic diagnostic = diagnostics.reportInScope(code, lineNum, charPos, scope, message);
+        if (diagnostic == null)
+            diagnostic = new Diagnostic(code, lineNum, charPos, message);
+        return new ErrorSymbol(diagnostic);
+    }
+
+    // Storage ==========================================
+    private int frameSlots; // locals declared so far in the function being parsed
+
+    // Gives a variable, array or function just declared its storage class and slot.
+    private void allocate(Symbol sym) {
+        if (symbolTable.isGlobal())
+            allocateGlobal(sym, symbolTable);
+        else
+            sym.setStorage(Symbol.Storage.LOCAL, frameSlots++);
+    }
+
+    // a global's slot is its place among the globals, in order of declaration;
+    // shared with TableParser
+    static void allocateGlobal(Symbol sym, SymbolTable globals) {
+        sym.setStorage(Symbol.Storage.GLOBAL, globals.size() - 1);
     }
 
 // Typing System ===================================
@@ -150,15 +253,31 @@ public class Parser {
     }
 
     // Parser ==========================================
-    private Scanner scanner;
-    private Token currentToken;
+    // a file being lexed is read through a ring of lookahead, without any Token objects
+    private TokenRing ring;
+
+    // a pre-lexed file is walked by index instead
+    private TokenBuffer tokens;
+    private int cursor;
 
     public Parser(Scanner scanner) {
-        this.scanner = scanner;
-        this.currentToken = scanner.next();
+        this.ring = new TokenRing(scanner);
+    }
+
+    public Parser(TokenBuffer tokens) {
+        this.tokens = tokens;
+        this.cursor = 0;
     }
 
     public ast.Command parse() {
+        if (parseTables && tokens != null && parseTreeSink == null) {
+            TableParser tables = new TableParser(tokens, globalScope(), diagnostics.scopeDumps());
+            ast.Command tree = tables.parse();
+            if (tree != null) {
+                diagnostics.append(tables.diagnostics());
+                return tree;
+            }
+        }
         initSymbolTable();
         try {
             return program();
@@ -167,13 +286,202 @@ public class Parser {
         }
     }
 
+    // Table-Driven Parsing ==========================================
+    private boolean parseTables = false;
+
+    // Has parse() of a TokenBuffer go through TableParser, the parser generated
+    // from crux.grammar, instead of the rules below. A file with a syntax error
+    // is still parsed, and its errors reported, by the rules.
+    public void useParseTables(boolean parseTables) {
+        this.parseTables = parseTables;
+    }
+
+    // Parallel Parsing ==========================================
+
+    /* Parses like parse(), with each top-level function definition parsed on
+     * pool by a Parser of its own. A pre-scan matching braces cuts the buffer
+     * into declaration spans. The globals are then declared in source order,
+     * and each function is handed to the pool as soon as its own name is,
+     * along with a view of the globals that stops at it; the view is a
+     * snapshot, so the declarations after it go on meanwhile. It resolves
+     * exactly the symbols it would sequentially. The tree and the errors are
+     * those of parse(). A part that does not end where its span does (a syntax
+     * error skipping past it, say) means the spans were not the grammar's, and
+     * the whole file is parsed again sequentially; so is a file with tracing
+     * or scope dumps on, whose output depends on order.
+     */
+    public ast.Command parse(ForkJoinPool pool) {
+        int[] spans = null;
+        if (tokens != null && parseTreeSink == null && !diagnostics.scopeDumps())
+            spans = declarationSpans(tokens);
+        int functions = 0;
+        for (int i = 0; spans != null && i < spans.length - 1; i++) {
+            if (tokens.is(spans[i], Token.Kind.FUNC))
+                functions++;
+        }
+        if (functions < 2)
+            return parse();
+
+        initSymbolTable();
+        tokens.internIdentifiers();
+        int count = spans.length - 1;
+        Parser[] parts = new Parser[count];
+        ast.Declaration[] decls = new ast.Declaration[count];
+        ParseDeclaration[] tasks = new ParseDeclaration[count];
+
+        // variables and arrays are parsed right away, functions on the pool
+        for (int i = 0; i < count; i++) {
+            parts[i] = new Parser(tokens, spans[i], diagnostics.limit());
+            if (tokens.is(spans[i], Token.Kind.FUNC)) {
+                int visible = symbolTable.size();
+                try {
+                    symbolTable.insert(tokens.identifier(spans[i] + 1));
+                } catch (RedeclarationError e) {
+                    // its own parse reports it
+                }
+                tasks[i] = new ParseDeclaration(parts[i], symbolTable.view(visible), spans[i + 1]);
+                pool.execute(tasks[i]);
+            } else {
+                decls[i] = parts[i].parseSpan(symbolTable, spans[i + 1]);
+                if (decls[i] == null)
+                    return parseAgain(tasks);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (tasks[i] != null)
+                decls[i] = tasks[i].join();
+            if (decls[i] == null)
+                return parseAgain(tasks);
+        }
+
+        ast.DeclarationList tree = new ast.DeclarationList(tokens.lineNumber(0), tokens.charPosition(0));
+        for (int i = 0; i < count; i++) {
+            tree.add(decls[i]);
+            diagnostics.append(parts[i].diagnostics);
+        }
+        return tree;
+    }
+
+    // Drops the parts still to run and parses sequentially instead.
+    private ast.Command parseAgain(ParseDeclaration[] tasks) {
+        for (ParseDeclaration task : tasks) {
+            if (task != null)
+                task.cancel(false);
+        }
+        return parse();
+    }
+
+    // parses the declaration at the start of a part of the buffer
+    Parser(TokenBuffer tokens, int from, int errorLimit) {
+        this.tokens = tokens;
+        this.cursor = from;
+        this.diagnostics.setLimit(errorLimit);
+    }
+
+    // Parses the declaration this part starts with, in the global scope
+    // globals. Returns null if the grammar does not end it at token end.
+    ast.Declaration parseSpan(SymbolTable globals, int end) {
+        symbolTable = globals;
+        ast.Declaration decl = recoverableDeclaration();
+        return cursor == end ? decl : null;
+    }
+
+    private static class ParseDeclaration extends RecursiveTask<ast.Declaration> {
+        private static final long serialVersionUID = 1L;
+
+        private final Parser part;
+        private final SymbolTable globals;
+        private final int end;
+
+        ParseDeclaration(Parser part, SymbolTable globals, int end) {
+            this.part = part;
+            this.globals = globals;
+            this.end = end;
+        }
+
+        @Override
+        protected ast.Declaration compute() {
+            return part.parseSpan(globals, end);
+        }
+    }
+
+    // Where each top-level declaration in tokens starts, followed by where its
+    // EOF is; null unless the file is only declarations with matched braces.
+    static int[] declarationSpans(TokenBuffer tokens) {
+        int[] spans = new int[16];
+        int count = 0;
+        int i = 0;
+        while (!tokens.is(i, Token.Kind.EOF)) {
+            if (count + 1 == spans.length)
+                spans = Arrays.copyOf(spans, count * 2);
+            spans[count++] = i;
+            i = declarationEnd(tokens, i);
+            if (i < 0)
+                return null;
+        }
+        spans[count++] = i;
+        return Arrays.copyOf(spans, count);
+    }
+
+    // Where the top-level declaration starting at token i ends, going by its
+    // braces and semicolon only, or -1 if it is not one the pre-scan can cut.
+    static int declarationEnd(TokenBuffer tokens, int i) {
+        if (tokens.is(i, Token.Kind.FUNC)) {
+            // the header holds no braces, so the span ends with the body's '}'
+            if (!tokens.is(i + 1, Token.Kind.IDENTIFIER))
+                return -1;
+            int depth = 0;
+            do {
+                i++;
+                if (tokens.is(i, Token.Kind.EOF))
+                    return -1;
+                if (tokens.is(i, Token.Kind.OPEN_BRACE))
+                    depth++;
+                else if (tokens.is(i, Token.Kind.CLOSE_BRACE) && --depth < 0)
+                    return -1;
+            } while (depth > 0 || !tokens.is(i, Token.Kind.CLOSE_BRACE));
+        } else if (tokens.is(i, Token.Kind.VAR) || tokens.is(i, Token.Kind.ARRAY)) {
+            do {
+                i++;
+                if (tokens.is(i, Token.Kind.EOF) || tokens.is(i, Token.Kind.OPEN_BRACE)
+                        || tokens.is(i, Token.Kind.CLOSE_BRACE))
+                    return -1;
+            } while (!tokens.is(i, Token.Kind.SEMICOLON));
+        } else {
+            return -1;
+        }
+        return i + 1;
+    }
+
     // Helper Methods ==========================================
+    private Token.Kind currentKind() {
+        if (tokens != null)
+            return tokens.kind(cursor);
+        return ring.peek(0);
+    }
+
+    private String currentLexeme() {
+        if (tokens != null)
+            return tokens.lexeme(cursor);
+        return ring.lexeme(0);
+    }
+
+    // moves to the next token, staying put on EOF
+    private void advance() {
+        tokensConsumed++;
+        if (tokens == null)
+            ring.advance();
+        else if (cursor < tokens.size() - 1)
+            cursor++;
+    }
+
     private boolean have(Token.Kind kind) {
-        return currentToken.is(kind);
+        return currentKind() == kind;
     }
 
     private boolean have(NonTerminal nt) {
-        return nt.firstSet().contains(currentToken.kind());
+        return nt.firstContains(currentKind());
     }
 
     /*
@@ -195,7 +503,7 @@ public class Parser {
 
     private boolean accept(Token.Kind kind) {
         if (have(kind)) {
-            currentToken = scanner.next();
+            advance();
             return true;
         }
         return false;
@@ -203,105 +511,164 @@ public class Parser {
 
     private boolean accept(NonTerminal nt) {
         if (have(nt)) {
-            currentToken = scanner.next();
+            advance();
             return true;
         }
         return false;
     }
 
-    private Token expectRetrieve(Token.Kind kind) {
-        Token tok = currentToken;
+    private Token.Kind expectRetrieve(Token.Kind kind) {
         if (accept(kind))
-            return tok;
-        String errorMessage = reportSyntaxError(kind);
-        throw new QuitParseException(errorMessage);
+            return kind;
+        throw new QuitParseException(reportSyntaxError(kind));
         //return ErrorToken(errorMessage);
     }
 
-    private Token expectRetrieve(NonTerminal nt) {
-        Token tok = currentToken;
+    private Token.Kind expectRetrieve(NonTerminal nt) {
+        Token.Kind kind = currentKind();
         if (accept(nt))
-            return tok;
-        String errorMessage = reportSyntaxError(nt);
-        throw new QuitParseException(errorMessage);
+            return kind;
+        throw new QuitParseException(reportSyntaxError(nt));
         //return ErrorToken(errorMessage);
     }
 
     private boolean expect(Token.Kind kind) {
         if (accept(kind))
             return true;
-        String errorMessage = reportSyntaxError(kind);
-        throw new QuitParseException(errorMessage);
+        throw new QuitParseException(reportSyntaxError(kind));
         //return false;
     }
 
     private boolean expect(NonTerminal nt) {
         if (accept(nt))
             return true;
-        String errorMessage = reportSyntaxError(nt);
-        throw new QuitParseException(errorMessage);
+        throw new QuitParseException(reportSyntaxError(nt));
         //return false;
     }
 
     private String expectIdentifier() {
-        String name = currentToken.lexeme();
+        String name = currentLexeme();
         if (expect(Token.Kind.IDENTIFIER))
             return name;
         return null;
     }
 
+    // Expects an identifier naming a symbol and returns its InternTable id.
+    private int expectSymbol() {
+        if (!have(Token.Kind.IDENTIFIER))
+            expect(Token.Kind.IDENTIFIER); // reports and quits
+        int id = tokens != null ? tokens.identifier(cursor) : ring.identifier(0);
+        advance();
+        return id;
+    }
+
     private Integer expectInteger() {
-        String num = currentToken.lexeme();
+        String num = currentLexeme();
         if (expect(Token.Kind.INTEGER))
             return Integer.valueOf(num);
         return null;
     }
 
+// Error Recovery ====================================================
+
+    /* A syntax error abandons the statement or declaration it occurs in. The
+     * parser then skips ahead to a token that may follow one, stepping over any
+     * braced block whole, and carries on with an ast.Error standing in for what
+     * was skipped. One parse thus reports every syntax error.
+     */
+
+    private ast.Declaration recoverableDeclaration() {
+        int lineNum = lineNumber();
+        int charPos = charPosition();
+        SymbolTable scope = symbolTable;
+        int depth = parseTreeRecursionDepth;
+        try {
+            return declaration();
+        } catch (QuitParseException q) {
+            symbolTable = scope;
+            parseTreeRecursionDepth = depth;
+            skipDeclaration();
+            lastRecovery = tokensConsumed;
+            return new ast.Error(lineNum, charPos, q.diagnostic());
+        }
+    }
+
+    // Skips to a token in FOLLOW(statement), or past the ';' ending the broken
+    // statement. Stops at the start of a declaration too, as a missing '}' most
+    // likely left the parser inside the previous function.
+    private void skipStatement() {
+        int depth = 0;
+        while (!have(Token.Kind.EOF)) {
+            Token.Kind kind = currentKind();
+            if (depth == 0) {
+                if (kind == Token.Kind.SEMICOLON) {
+                    advance();
+                    return;
+                }
+                if (NonTerminal.STATEMENT.followContains(kind) || NonTerminal.DECLARATION.followContains(kind))
+                    return;
+            }
+            if (kind == Token.Kind.OPEN_BRACE)
+                depth++;
+            else if (kind == Token.Kind.CLOSE_BRACE)
+                depth--;
+            advance();
+        }
+    }
+
+    // Skips to a token in FOLLOW(declaration).
+    private void skipDeclaration() {
+        int depth = 0;
+        while (!have(Token.Kind.EOF)) {
+            Token.Kind kind = currentKind();
+            if (depth == 0 && NonTerminal.DECLARATION.followContains(kind))
+                return;
+            if (kind == Token.Kind.OPEN_BRACE)
+                depth++;
+            else if (kind == Token.Kind.CLOSE_BRACE && depth > 0)
+                depth--;
+            advance();
+        }
+    }
+
 // Grammar Rules =====================================================
 
+    private ast.Expression currentLiteral() {
+        return ast.Command.newLiteral(currentKind(), currentLexeme(), lineNumber(), charPosition());
+    }
+
     // literal := INTEGER | FLOAT | TRUE | FALSE .
     public ast.Expression literal() {
         ast.Expression expr;
 
         enterRule(NonTerminal.LITERAL);
         if (have(Token.Kind.INTEGER)) {
-            expr = ast.Command.newLiteral(currentToken);
+            expr = currentLiteral();
             expect(Token.Kind.INTEGER);
 
         } else if (have(Token.Kind.FLOAT)) {
-            expr = ast.Command.newLiteral(currentToken);
+            expr = currentLiteral();
             expect(Token.Kind.FLOAT);
 
         } else if (have(Token.Kind.TRUE)) {
-            expr = ast.Command.newLiteral(currentToken);
+            expr = currentLiteral();
             expect(Token.Kind.TRUE);
 
         } else if (have(Token.Kind.FALSE)) {
-            expr = ast.Command.newLiteral(currentToken);
+            expr = currentLiteral();
             expect(Token.Kind.FALSE);
 
         } else {
-            String message = reportSyntaxError(NonTerminal.LITERAL);
+            Diagnostic message = reportSyntaxError(NonTerminal.LITERAL);
             expr = new ast.Error(lineNumber(), charPosition(), message);
         }
+        exitRule(NonTerminal.LITERAL);
         return expr;
     }
 
     // designator := IDENTIFIER { "[" expression0 "]" } .
     public ast.Expression designator() {
-        enterRule(NonTerminal.DESIGNATOR);
-        int lineNum = lineNumber();
-        int charPos = charPosition();
-        Symbol sym = tryResolveSymbol(expectIdentifier());
-
-        ast.Expression expr = new ast.AddressOf(lineNum, charPos, sym);
-        while (accept(Token.Kind.OPEN_BRACKET)) {
-            expr = new ast.Index(lineNumber(), charPosition(), expr, expression0());
-            expect(Token.Kind.CLOSE_BRACKET);
-        }
-
-        exitRule(NonTerminal.DESIGNATOR);
-        return expr;
+        return nestedExpression(NonTerminal.DESIGNATOR);
     }
 
     // type := IDENTIFIER .
@@ -312,137 +679,284 @@ public class Parser {
         return t;
     }
 
-    // op0 := ">=" | "<=" | "!=" | "==" | ">" | "<" .
-    public Token op0() {
-        enterRule(NonTerminal.OP0);
-        Token tok = expectRetrieve(NonTerminal.OP0);
-        exitRule(NonTerminal.OP0);
-        return tok;
-    }
-
-    // expression0 := expression1 [ op0 expression1 ] .
-    public ast.Expression expression0() {
-        enterRule(NonTerminal.EXPRESSION0);
-        ast.Expression leftSide = expression1();
-        if (have(NonTerminal.OP0)) {
-            Token op = op0();
-            ast.Expression rightSide = expression1();
-            leftSide = ast.Command.newExpression(leftSide, op, rightSide);
+    /* Binary operators by binding power, tightest last; 0 means the kind is not
+     * a binary operator. expression0 is parsed by precedence climbing over this
+     * table, with power p standing for the rules op(p-1) and expression(p-1).
+     * Adding a precedence level takes a new power here, its rules in
+     * NonTerminal, and the operators' cases in ast.Command.newExpression.
+     */
+    private static final int COMPARISON = 1;     // op0, and non-associative
+    private static final int ADDITIVE = 2;       // op1
+    private static final int MULTIPLICATIVE = 3; // op2
+    private static final int[] BINDING_POWER = new int[Token.Kind.values().length];
+
+    // by binding power: the operator rules, and the expression rules below
+    // expression0 that their right sides start at
+    private static final NonTerminal[] OP_RULE = {
+        null, NonTerminal.OP0, NonTerminal.OP1, NonTerminal.OP2
+    };
+    private static final NonTerminal[] EXPRESSION_RULE = {
+        NonTerminal.EXPRESSION0, NonTerminal.EXPRESSION1, NonTerminal.EXPRESSION2, NonTerminal.EXPRESSION3
+    };
+
+    static {
+        for (Token.Kind kind : Token.Kind.values()) {
+            if (NonTerminal.OP0.firstContains(kind))
+                BINDING_POWER[kind.ordinal()] = COMPARISON;
+            else if (NonTerminal.OP1.firstContains(kind))
+                BINDING_POWER[kind.ordinal()] = ADDITIVE;
+            else if (NonTerminal.OP2.firstContains(kind))
+                BINDING_POWER[kind.ordinal()] = MULTIPLICATIVE;
         }
-        exitRule(NonTerminal.EXPRESSION0);
-        return leftSide;
     }
 
-    // op1 := "+" | "-" | "or" .
-    public Token op1() {
-        enterRule(NonTerminal.OP1);
-        Token tok = expectRetrieve(NonTerminal.OP1);
-        exitRule(NonTerminal.OP1);
-        return tok;
-    }
+    // An expression still waiting on one nested inside it, kept on the stack of
+    // nestedExpression in place of a Java stack frame.
+    private static class OpenExpression {
+        static final int BINARY = 0; // operands binding at least minPower
+        static final int NOT = 1;    // "not" before an expression3
+        static final int PARENS = 2; // "(" expression0 ")"
+        static final int INDEX = 3;  // designator, at an index
+        static final int CALL = 4;   // call-expression, at an argument
+
+        final int kind;
+        final int lineNum;
+        final int charPos;
+        // the trace depth of its rule: for BINARY the expression0 it is part
+        // of, and for NOT and PARENS the expression3 they make up
+        final int depth;
+
+        // BINARY: the left side so far, and the operator whose right side it is
+        // waiting on, if any
+        int minPower;
+        ast.Expression leftSide;
+        Token.Kind op;
+        int power;
+        int opLine;
+        int opPos;
+
+        // INDEX: the designator so far, where the index being parsed starts,
+        // and whether the designator is read as an operand
+        ast.Expression designator;
+        int indexLine;
+        int indexPos;
+        boolean dereference;
+
+        // CALL
+        Symbol function;
+        ast.ExpressionList args;
+
+        OpenExpression(int kind, int lineNum, int charPos, int depth) {
+            this.kind = kind;
+            this.lineNum = lineNum;
+            this.charPos = charPos;
+            this.depth = depth;
+        }
 
-    // expression1 := expression2 { op1 expression2 } .
-    public ast.Expression expression1() {
-        enterRule(NonTerminal.EXPRESSION1);
-        ast.Expression leftSide = expression2();
-        while (have(NonTerminal.OP1)) {
-            Token op = op1();
-            ast.Expression rightSide = expression2();
-            leftSide = ast.Command.newExpression(leftSide, op, rightSide);
+        static OpenExpression binary(int minPower, int depth) {
+            OpenExpression open = new OpenExpression(BINARY, 0, 0, depth);
+            open.minPower = minPower;
+            return open;
         }
-        exitRule(NonTerminal.EXPRESSION1);
-        return leftSide;
     }
 
-    // op2 := "*" | "/" | "and" .
-    public Token op2() {
-        enterRule(NonTerminal.OP2);
-        Token tok = expectRetrieve(NonTerminal.OP2);
-        exitRule(NonTerminal.OP2);
-        return tok;
-    }
+    /* Parses rule, which is expression0, designator or call-expression, as the
+     * grammar's rules would, tracing included, but keeping the expressions it
+     * is inside of on an explicit stack, so parentheses, "not", indexes and
+     * call arguments nest as deeply as the heap allows. The loop alternates
+     * between starting an expression3, descending through any that open a
+     * nested expression, and handing a finished one (value) to the innermost
+     * expression waiting on it.
+     */
+    private ast.Expression nestedExpression(NonTerminal rule) {
+        Stack<OpenExpression> open = new Stack<OpenExpression>();
+        int entryDepth = parseTreeRecursionDepth;
+        ast.Expression value = null;
+        if (rule == NonTerminal.DESIGNATOR)
+            value = openDesignator(open, entryDepth, false);
+        else if (rule == NonTerminal.CALL_EXPRESSION)
+            value = openCall(open, entryDepth);
+        else
+            open.push(OpenExpression.binary(COMPARISON, entryDepth));
+
+        while (true) {
+            if (value == null) {
+                // the expression3 the top one is waiting on, after the rules
+                // from its operand's level down to it
+                OpenExpression top = open.peek();
+                int depth;
+                if (top.kind == OpenExpression.BINARY) {
+                    // the right side of an operator starts at its own level
+                    int from = top.op == null ? top.minPower - 1 : top.power;
+                    for (int level = from; level < EXPRESSION_RULE.length; level++)
+                        traceRule(EXPRESSION_RULE[level], top.depth + level);
+                    depth = top.depth + EXPRESSION_RULE.length - 1;
+                } else {
+                    depth = top.depth + 1;
+                    traceRule(NonTerminal.EXPRESSION3, depth);
+                }
+
+                if (have(NonTerminal.LITERAL)) {
+                    parseTreeRecursionDepth = depth + 1;
+                    value = literal();
+                } else if (have(NonTerminal.DESIGNATOR)) {
+                    value = openDesignator(open, depth + 1, true);
+                } else if (accept(Token.Kind.OPEN_PAREN)) {
+                    open.push(new OpenExpression(OpenExpression.PARENS, 0, 0, depth));
+                    open.push(OpenExpression.binary(COMPARISON, depth + 1));
+                } else if (have(Token.Kind.NOT)) {
+                    open.push(new OpenExpression(OpenExpression.NOT, lineNumber(), charPosition(), depth));
+                    advance();
+                } else if (have(NonTerminal.CALL_EXPRESSION)) {
+                    value = openCall(open, depth + 1);
+                } else {
+                    Diagnostic message = reportSyntaxError(NonTerminal.EXPRESSION3);
+                    value = new ast.Error(lineNumber(), charPosition(), message);
+                }
+                continue;
+            }
 
-    // expression2 := expression3 { op2 expression3 } .
-    public ast.Expression expression2() {
-        enterRule(NonTerminal.EXPRESSION2);
-        ast.Expression leftSide = expression3();
-        while (have(NonTerminal.OP2)) {
-            Token op = op2();
-            ast.Expression rightSide = expression3();
-            leftSide = ast.Command.newExpression(leftSide, op, rightSide);
-        }
-        exitRule(NonTerminal.EXPRESSION2);
-        return leftSide;
-    }
-
-    /* expression3 := "not" expression3
-               | "(" expression0 ")"
-               | designator
-               | call-expression
-               | literal .
-    */
-    public ast.Expression expression3() {
-        enterRule(NonTerminal.EXPRESSION3);
-        ast.Expression expr = null;
-
-        if (have(Token.Kind.NOT)) {
-            Token tok = expectRetrieve(Token.Kind.NOT);
-            expr = new ast.LogicalNot(tok.lineNumber(), tok.charPosition(), expression3());
-        } else if (accept(Token.Kind.OPEN_PAREN)) {
-            expr = expression0();
-            expect(Token.Kind.CLOSE_PAREN);
-        } else if (have(NonTerminal.DESIGNATOR)) {
-            int lineNum = currentToken.lineNumber();
-            int charPos = currentToken.charPosition();
-            expr = designator();
-            expr = new ast.Dereference(lineNum, charPos, expr);
-        } else if (have(NonTerminal.CALL_EXPRESSION)) {
-            expr = call_expression();
-        } else if (have(NonTerminal.LITERAL)) {
-            expr = literal();
-        } else {
-            String message = reportSyntaxError(NonTerminal.EXPRESSION3);
-            expr = new ast.Error(lineNumber(), charPosition(), message);
+            if (open.isEmpty()) {
+                parseTreeRecursionDepth = entryDepth;
+                return value;
+            }
+            OpenExpression top = open.peek();
+            switch (top.kind) {
+            case OpenExpression.BINARY:
+                int power = BINDING_POWER[currentKind().ordinal()];
+                if (top.op == null) {
+                    top.leftSide = value;
+                } else if (power > top.power) {
+                    // value is the left side of an operator binding tighter
+                    open.push(OpenExpression.binary(top.power + 1, top.depth));
+                    break;
+                } else {
+                    top.leftSide = ast.Command.newExpression(top.leftSide, top.op, top.opLine, top.opPos, value);
+                    top.op = null;
+                    if (top.power == COMPARISON)
+                        top.minPower = COMPARISON + 1; // a < b < c is not an expression0
+                }
+                if (power >= top.minPower) {
+                    traceRule(OP_RULE[power], top.depth + power);
+                    top.power = power;
+                    top.op = currentKind();
+                    top.opLine = lineNumber();
+                    top.opPos = charPosition();
+                    advance();
+                    value = null;
+                } else {
+                    open.pop();
+                    value = top.leftSide;
+                }
+                break;
+            case OpenExpression.NOT:
+                open.pop();
+                value = new ast.LogicalNot(top.lineNum, top.charPos, value);
+                break;
+            case OpenExpression.PARENS:
+                expect(Token.Kind.CLOSE_PAREN);
+                open.pop();
+                break;
+            case OpenExpression.INDEX:
+                top.designator = new ast.Index(top.indexLine, top.indexPos, top.designator, value);
+                expect(Token.Kind.CLOSE_BRACKET);
+                if (accept(Token.Kind.OPEN_BRACKET)) {
+                    top.indexLine = lineNumber();
+                    top.indexPos = charPosition();
+                    open.push(OpenExpression.binary(COMPARISON, top.depth + 1));
+                    value = null;
+                } else {
+                    open.pop();
+                    value = top.designator;
+                    if (top.dereference)
+                        value = new ast.Dereference(top.lineNum, top.charPos, value);
+                }
+                break;
+            case OpenExpression.CALL:
+                top.args.add(value);
+                if (accept(Token.Kind.COMMA)) {
+                    open.push(OpenExpression.binary(COMPARISON, top.depth + 2));
+                    value = null;
+                } else {
+                    expect(Token.Kind.CLOSE_PAREN);
+                    open.pop();
+                    value = new ast.Call(top.lineNum, top.charPos, top.function, top.args);
+                }
+                break;
+            }
         }
-        exitRule(NonTerminal.EXPRESSION3);
-        return expr;
+    }
+
+    // Starts a designator traced at depth. Returns it if it has no index, and
+    // otherwise pushes it and its first index for nestedExpression to finish.
+    private ast.Expression openDesignator(Stack<OpenExpression> open, int depth, boolean dereference) {
+        traceRule(NonTerminal.DESIGNATOR, depth);
+        int lineNum = lineNumber();
+        int charPos = charPosition();
+        Symbol sym = tryResolveSymbol(expectSymbol());
+
+        ast.Expression designator = new ast.AddressOf(lineNum, charPos, sym);
+        if (!accept(Token.Kind.OPEN_BRACKET))
+            return dereference ? new ast.Dereference(lineNum, charPos, designator) : designator;
+        OpenExpression index = new OpenExpression(OpenExpression.INDEX, lineNum, charPos, depth);
+        index.designator = designator;
+        index.indexLine = lineNumber();
+        index.indexPos = charPosition();
+        index.dereference = dereference;
+        open.push(index);
+        open.push(OpenExpression.binary(COMPARISON, depth + 1));
+        return null;
     }
 
     // call-expression := "::" IDENTIFIER "(" expression-list ")" .
-    public ast.Call call_expression() {
-        enterRule(NonTerminal.CALL_EXPRESSION);
+    // expression-list := [ expression0 { "," expression0 } ] .
+    // Starts a call-expression traced at depth. Returns it if it has no
+    // arguments, and otherwise pushes it and its first argument.
+    private ast.Expression openCall(Stack<OpenExpression> open, int depth) {
+        traceRule(NonTerminal.CALL_EXPRESSION, depth);
         int lineNum = lineNumber();
         int charPos = charPosition();
 
         expect(Token.Kind.CALL);
-        Symbol func = tryResolveSymbol(expectIdentifier());
+        Symbol func = tryResolveSymbol(expectSymbol());
         expect(Token.Kind.OPEN_PAREN);
-        ast.ExpressionList args = expression_list();
-        expect(Token.Kind.CLOSE_PAREN);
-
-        exitRule(NonTerminal.CALL_EXPRESSION);
-        return new ast.Call(lineNum, charPos, func, args);
+        traceRule(NonTerminal.EXPRESSION_LIST, depth + 1);
+        ast.ExpressionList args = new ast.ExpressionList(lineNumber(), charPosition());
+        if (!have(NonTerminal.EXPRESSION0)) {
+            expect(Token.Kind.CLOSE_PAREN);
+            return new ast.Call(lineNum, charPos, func, args);
+        }
+        OpenExpression call = new OpenExpression(OpenExpression.CALL, lineNum, charPos, depth);
+        call.function = func;
+        call.args = args;
+        open.push(call);
+        open.push(OpenExpression.binary(COMPARISON, depth + 2));
+        return null;
     }
 
-    // expression-list := [ expression0 { "," expression0 } ] .
-    public ast.ExpressionList expression_list() {
-        enterRule(NonTerminal.EXPRESSION_LIST);
-        ast.ExpressionList exprs = new ast.ExpressionList(lineNumber(), charPosition());
+    // expression0 := expression1 [ op0 expression1 ] .
+    // expression1 := expression2 { op1 expression2 } .
+    // expression2 := expression3 { op2 expression3 } .
+    // expression3 := "not" expression3
+    //              | "(" expression0 ")"
+    //              | designator
+    //              | call-expression
+    //              | literal .
+    // op0 := ">=" | "<=" | "!=" | "==" | ">" | "<" .
+    // op1 := "+" | "-" | "or" .
+    // op2 := "*" | "/" | "and" .
+    public ast.Expression expression0() {
+        return nestedExpression(NonTerminal.EXPRESSION0);
+    }
 
-        if (have(NonTerminal.EXPRESSION0)) {
-            exprs.add(expression0());
-            while (accept(Token.Kind.COMMA)) {
-                exprs.add(expression0());
-            }
-        }
-        exitRule(NonTerminal.EXPRESSION_LIST);
-        return exprs;
+    public ast.Call call_expression() {
+        return (ast.Call) nestedExpression(NonTerminal.CALL_EXPRESSION);
     }
 
     // parameter := IDENTIFIER ":" type .
     public Symbol parameter() {
         enterRule(NonTerminal.PARAMETER);
-        Symbol sym = tryDeclareSymbol(expectIdentifier());
+        Symbol sym = tryDeclareSymbol(expectSymbol());
         expect(Token.Kind.COLON);
         sym.setType(type());
         exitRule(NonTerminal.PARAMETER);
@@ -459,6 +973,8 @@ public class Parser {
                 params.add(parameter());
             }
         }
+        for (int i = 0; i < params.size(); i++)
+            params.get(i).setStorage(Symbol.Storage.PARAMETER, i);
         exitRule(NonTerminal.PARAMETER_LIST);
         return params;
     }
@@ -470,7 +986,8 @@ public class Parser {
         int charPos = charPosition();
 
         expect(Token.Kind.VAR);
-        Symbol sym = tryDeclareSymbol(expectIdentifier());
+        Symbol sym = tryDeclareSymbol(expectSymbol());
+        allocate(sym);
         expect(Token.Kind.COLON);
         sym.setType(type());
         expect(Token.Kind.SEMICOLON);
@@ -486,7 +1003,8 @@ public class Parser {
         int charPos = charPosition();
 
         expect(Token.Kind.ARRAY);
-        Symbol sym = tryDeclareSymbol(expectIdentifier());
+        Symbol sym = tryDeclareSymbol(expectSymbol());
+        allocate(sym);
         expect(Token.Kind.COLON);
         sym.setType(type());
         expect(Token.Kind.OPEN_BRACKET);
@@ -501,7 +1019,7 @@ public class Parser {
 
         // arrays require reversing the description
         while (!indexes.empty())
-            sym.setType(new ArrayType(indexes.pop(), sym.type()));
+            sym.setType(TypeTable.array(indexes.pop(), sym.type()));
 
         exitRule(NonTerminal.ARRAY_DECLARATION);
         return new ast.ArrayDeclaration(lineNum, charPos, sym);
@@ -514,18 +1032,20 @@ public class Parser {
         int charPos = charPosition();
 
         expect(Token.Kind.FUNC);
-        Symbol sym = tryDeclareSymbol(expectIdentifier());
+        Symbol sym = tryDeclareSymbol(expectSymbol());
+        allocate(sym);
         expect(Token.Kind.OPEN_PAREN);
         enterScope();
+        frameSlots = 0;
         List<Symbol> params = parameter_list();
         expect(Token.Kind.CLOSE_PAREN);
         expect(Token.Kind.COLON);
         Type retType = type();
-        TypeList paramTypes = new TypeList();
+        TypeList paramTypes = TypeTable.EMPTY_LIST;
         for (Symbol s : params) {
-            paramTypes.append(s.type());
+            paramTypes = TypeTable.append(paramTypes, s.type());
         }
-        sym.setType(new FuncType(paramTypes, retType));
+        sym.setType(TypeTable.func(paramTypes, retType));
 
         ast.StatementList body = statement_block();
         exitScope();
@@ -546,7 +1066,7 @@ public class Parser {
         } else if (have(NonTerminal.FUNCTION_DECLARATION)) {
             dec = function_definition();
         } else {
-            String message = reportSyntaxError(NonTerminal.DECLARATION);
+            Diagnostic message = reportSyntaxError(NonTerminal.DECLARATION);
             dec = new ast.Error(lineNumber(), charPosition(), message);
         }
 
@@ -560,7 +1080,7 @@ public class Parser {
         ast.DeclarationList decList = new ast.DeclarationList(lineNumber(), charPosition());
 
         while (have(NonTerminal.DECLARATION)) {
-            decList.add(declaration());
+            decList.add(recoverableDeclaration());
         }
 
         exitRule(NonTerminal.DECLARATION_LIST);
@@ -570,13 +1090,15 @@ public class Parser {
     // assignment-statement := "let" designator "=" expression0 ";"
     public ast.Assignment assignment_statement() {
         enterRule(NonTerminal.ASSIGNMENT_STATEMENT);
-        Token let = expectRetrieve(Token.Kind.LET);
+        int lineNum = lineNumber();
+        int charPos = charPosition();
+        expect(Token.Kind.LET);
         ast.Expression dest = designator();
         expect(Token.Kind.ASSIGN);
         ast.Expression source = expression0();
         expect(Token.Kind.SEMICOLON);
         exitRule(NonTerminal.ASSIGNMENT_STATEMENT);
-        return new ast.Assignment(let.lineNumber(), let.charPosition(), dest, source);
+        return new ast.Assignment(lineNum, charPos, dest, source);
     }
 
     // call-statement := call-expression ";"
@@ -588,45 +1110,6 @@ public class Parser {
         return call;
     }
 
-    // if-statement := "if" expression0 statement-block [ "else" statement-block ] .
-    public ast.IfElseBranch if_statement() {
-        enterRule(NonTerminal.IF_STATEMENT);
-        int lineNum = lineNumber();
-        int charPos = charPosition();
-
-        expect(Token.Kind.IF);
-        ast.Expression cond = expression0();
-        enterScope();
-        ast.StatementList thenBlock = statement_block();
-        exitScope();
-
-        ast.StatementList elseBlock = new ast.StatementList(lineNumber(), charPosition());
-        if (accept(Token.Kind.ELSE)) {
-            enterScope();
-            elseBlock = statement_block();
-            exitScope();
-        }
-
-        exitRule(NonTerminal.IF_STATEMENT);
-        return new ast.IfElseBranch(lineNum, charPos, cond, thenBlock, elseBlock);
-    }
-
-    // while-statement := "while" expression0 statement-block .
-    public ast.WhileLoop while_statement() {
-        enterRule(NonTerminal.WHILE_STATEMENT);
-        int lineNum = lineNumber();
-        int charPos = charPosition();
-
-        expect(Token.Kind.WHILE);
-        ast.Expression cond = expression0();
-        enterScope();
-        ast.StatementList body = statement_block();
-        exitScope();
-
-        exitRule(NonTerminal.WHILE_STATEMENT);
-        return new ast.WhileLoop(lineNum, charPos, cond, body);
-    }
-
     // return-statement := "return" expression0 ";" .
     public ast.Return return_statement() {
         enterRule(NonTerminal.RETURN_STATEMENT);
@@ -647,6 +1130,8 @@ public class Parser {
     //            | if-statement
     //            | while-statement
     //            | return-statement .
+    // The if and while statements are parsed by nestedBlock, which keeps them on
+    // its stack; this takes the rest.
     public ast.Statement statement() {
         enterRule(NonTerminal.STATEMENT);
         ast.Statement stmt = null;
@@ -659,14 +1144,10 @@ public class Parser {
             stmt = call_statement();
         } else if (have(NonTerminal.ASSIGNMENT_STATEMENT)) {
             stmt = assignment_statement();
-        } else if (have(NonTerminal.IF_STATEMENT)) {
-            stmt = if_statement();
-        } else if (have(NonTerminal.WHILE_STATEMENT)) {
-            stmt = while_statement();
         } else if (have(NonTerminal.RETURN_STATEMENT)) {
             stmt = return_statement();
         } else {
-            String message = reportSyntaxError(NonTerminal.STATEMENT);
+            Diagnostic message = reportSyntaxError(NonTerminal.STATEMENT);
             stmt = new ast.Error(lineNumber(), charPosition(), message);
         }
 
@@ -675,37 +1156,146 @@ public class Parser {
     }
 
     // statement-list := { statement } .
-    public ast.StatementList statement_list() {
-        enterRule(NonTerminal.STATEMENT_LIST);
-        ast.StatementList block = new ast.StatementList(lineNumber(), charPosition());
+    // statement-block := "{" statement-list "}" .
+    // if-statement := "if" expression0 statement-block [ "else" statement-block ] .
+    // while-statement := "while" expression0 statement-block .
+    public ast.StatementList statement_block() {
+        return nestedBlock();
+    }
 
-        while (have(NonTerminal.STATEMENT)) {
-            block.add(statement());
+    // An if or while statement whose block is being parsed, kept on the stack
+    // of nestedBlock in place of a Java stack frame.
+    private static class OpenStatement {
+        final boolean isIf;
+        final int lineNum;
+        final int charPos;
+        final SymbolTable scope;        // to recover to, as for any statement
+        final ast.Expression cond;
+        final ast.StatementList outer;  // the block it is a statement of
+        final int depth;                // the trace depth of that block
+        ast.StatementList thenBlock;    // once an if is past it
+
+        OpenStatement(boolean isIf, int lineNum, int charPos, SymbolTable scope,
+                      ast.Expression cond, ast.StatementList outer, int depth) {
+            this.isIf = isIf;
+            this.lineNum = lineNum;
+            this.charPos = charPos;
+            this.scope = scope;
+            this.cond = cond;
+            this.outer = outer;
+            this.depth = depth;
         }
-
-        exitRule(NonTerminal.STATEMENT_LIST);
-        return block;
     }
 
-    // statement-block := "{" statement-list "}" .
-    public ast.StatementList statement_block() {
-        enterRule(NonTerminal.STATEMENT_BLOCK);
-        ast.StatementList block = new ast.StatementList(lineNumber(), charPosition());
+    /* Parses statement-block, tracing and recovering from errors statement by
+     * statement, but keeping the if and while statements it is inside of on an
+     * explicit stack, so blocks nest as deeply as the heap allows. A statement
+     * with a syntax error becomes an ast.Error, as does an if or while whose
+     * block is not closed. Errors in the outermost braces propagate.
+     */
+    private ast.StatementList nestedBlock() {
+        Stack<OpenStatement> open = new Stack<OpenStatement>();
+        int entryDepth = parseTreeRecursionDepth;
+        int depth = entryDepth; // of the innermost block
+        ast.StatementList block = openBlock(depth);
+        while (true) {
+            if (have(NonTerminal.STATEMENT)) {
+                int lineNum = lineNumber();
+                int charPos = charPosition();
+                SymbolTable scope = symbolTable;
+                try {
+                    if (have(Token.Kind.IF) || have(Token.Kind.WHILE)) {
+                        boolean isIf = have(Token.Kind.IF);
+                        traceRule(NonTerminal.STATEMENT, depth + 2);
+                        traceRule(isIf ? NonTerminal.IF_STATEMENT : NonTerminal.WHILE_STATEMENT, depth + 3);
+                        advance();
+                        parseTreeRecursionDepth = depth + 4;
+                        ast.Expression cond = expression0();
+                        enterScope();
+                        ast.StatementList inner = openBlock(depth + 4);
+                        open.push(new OpenStatement(isIf, lineNum, charPos, scope, cond, block, depth));
+                        block = inner;
+                        depth += 4;
+                    } else {
+                        parseTreeRecursionDepth = depth + 2;
+                        block.add(statement());
+                    }
+                } catch (QuitParseException q) {
+                    symbolTable = scope;
+                    skipStatement();
+                    lastRecovery = tokensConsumed;
+                    block.add(new ast.Error(lineNum, charPos, q.diagnostic()));
+                }
+                continue;
+            }
 
-        expect(Token.Kind.OPEN_BRACE);
-        while (have(NonTerminal.STATEMENT)) {
-            block = statement_list();
+            if (open.isEmpty()) {
+                expect(Token.Kind.CLOSE_BRACE);
+                parseTreeRecursionDepth = entryDepth;
+                return block;
+            }
+            OpenStatement stmt = open.peek();
+            try {
+                expect(Token.Kind.CLOSE_BRACE);
+                exitScope();
+                ast.Statement done;
+                if (stmt.isIf && stmt.thenBlock == null) {
+                    stmt.thenBlock = block;
+                    ast.StatementList elseBlock = new ast.StatementList(lineNumber(), charPosition());
+                    if (accept(Token.Kind.ELSE)) {
+                        enterScope();
+                        block = openBlock(depth);
+                        continue;
+                    }
+                    done = new ast.IfElseBranch(stmt.lineNum, stmt.charPos, stmt.cond, block, elseBlock);
+                } else if (stmt.isIf) {
+                    done = new ast.IfElseBranch(stmt.lineNum, stmt.charPos, stmt.cond, stmt.thenBlock, block);
+                } else {
+                    done = new ast.WhileLoop(stmt.lineNum, stmt.charPos, stmt.cond, block);
+                }
+                open.pop();
+                block = stmt.outer;
+                depth = stmt.depth;
+                block.add(done);
+            } catch (QuitParseException q) {
+                open.pop();
+                symbolTable = stmt.scope;
+                skipStatement();
+                lastRecovery = tokensConsumed;
+                block = stmt.outer;
+                depth = stmt.depth;
+                block.add(new ast.Error(stmt.lineNum, stmt.charPos, q.diagnostic()));
+            }
         }
-        expect(Token.Kind.CLOSE_BRACE);
+    }
 
-        exitRule(NonTerminal.STATEMENT_BLOCK);
-        return block;
+    // "{" traced at depth, and the block's list, placed at its first statement
+    // if there is one
+    private ast.StatementList openBlock(int depth) {
+        traceRule(NonTerminal.STATEMENT_BLOCK, depth);
+        int lineNum = lineNumber();
+        int charPos = charPosition();
+        expect(Token.Kind.OPEN_BRACE);
+        if (!have(NonTerminal.STATEMENT))
+            return new ast.StatementList(lineNum, charPos);
+        traceRule(NonTerminal.STATEMENT_LIST, depth + 1);
+        return new ast.StatementList(lineNumber(), charPosition());
     }
 
     // program := declaration-list EOF .
     public ast.DeclarationList program() {
         enterRule(NonTerminal.PROGRAM);
         ast.DeclarationList tree = declaration_list();
+
+        // stray tokens between declarations: report them and resume after them
+        while (!have(Token.Kind.EOF)) {
+            reportSyntaxError(Token.Kind.EOF);
+            skipDeclaration();
+            lastRecovery = tokensConsumed;
+            while (have(NonTerminal.DECLARATION)) {
+                tree.add(recoverableDeclaration());
+            }
+        }
         expect(Token.Kind.EOF);
         exitRule(NonTerminal.PROGRAM);
         return tree;
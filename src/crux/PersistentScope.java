@@ -0,0 +1,144 @@
+package crux;
+
+/* An immutable global scope: a hash array mapped trie from InternTable id to
+ * Symbol. Adding a symbol copies only the path to its leaf, at most seven
+ * nodes, and shares the rest of the trie with the scope it was added to, so
+ * every version stays valid. A global SymbolTable holds its symbols this way
+ * and snapshots them in O(1); any number of threads can then resolve names
+ * against a snapshot, with no lock and no copy, while the table goes on.
+ *
+ * Each symbol also keeps its index in order of declaration, so a view can
+ * see just a prefix of the scope and dumps can list it in order.
+ */
+final class PersistentScope {
+
+    static final PersistentScope EMPTY = new PersistentScope(null, null, 0);
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    // children sorted by their 5 bits of the hash, present as set in bitmap;
+    // each is a Node or a Leaf
+    private static final class Node {
+        final int bitmap;
+        final Object[] children;
+
+        Node(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+    }
+
+    private static final class Leaf {
+        final Symbol symbol;
+        final int index;
+
+        Leaf(Symbol symbol, int index) {
+            this.symbol = symbol;
+            this.index = index;
+        }
+    }
+
+    // the symbols, latest first
+    private static final class Link {
+        final Symbol symbol;
+        final Link next;
+
+        Link(Symbol symbol, Link next) {
+            this.symbol = symbol;
+            this.next = next;
+        }
+    }
+
+    private final Node root;
+    private final Link latest;
+    private final int size;
+
+    private PersistentScope(Node root, Link latest, int size) {
+        this.root = root;
+        this.latest = latest;
+        this.size = size;
+    }
+
+    // Multiplying by an odd constant is a bijection on ints, so two ids never
+    // share all 32 bits of hash and the trie needs no collision lists.
+    private static int hash(int id) {
+        return id * 0x9e3779b9;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // The symbol declared as id, if it is among the first visible declared.
+    Symbol get(int id, int visible) {
+        int h = hash(id);
+        Node node = root;
+        for (int shift = 0; node != null; shift += BITS) {
+            int bit = 1 << ((h >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0)
+                return null;
+            Object child = node.children[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (child instanceof Leaf) {
+                Leaf leaf = (Leaf) child;
+                return leaf.symbol.id() == id && leaf.index < visible ? leaf.symbol : null;
+            }
+            node = (Node) child;
+        }
+        return null;
+    }
+
+    Symbol get(int id) {
+        return get(id, size);
+    }
+
+    // This scope with sym declared next; its id must not be declared yet.
+    PersistentScope with(Symbol sym) {
+        Leaf leaf = new Leaf(sym, size);
+        return new PersistentScope(insert(root, hash(sym.id()), 0, leaf), new Link(sym, latest), size + 1);
+    }
+
+    private static Node insert(Node node, int h, int shift, Leaf leaf) {
+        int bit = 1 << ((h >>> shift) & MASK);
+        if (node == null)
+            return new Node(bit, new Object[] { leaf });
+        int at = Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            Object[] children = new Object[node.children.length + 1];
+            System.arraycopy(node.children, 0, children, 0, at);
+            children[at] = leaf;
+            System.arraycopy(node.children, at, children, at + 1, node.children.length - at);
+            return new Node(node.bitmap | bit, children);
+        }
+        Object child = node.children[at];
+        Object[] children = node.children.clone();
+        if (child instanceof Node) {
+            children[at] = insert((Node) child, h, shift + BITS, leaf);
+        } else {
+            Leaf other = (Leaf) child;
+            children[at] = pair(other, hash(other.symbol.id()), leaf, h, shift + BITS);
+        }
+        return new Node(node.bitmap, children);
+    }
+
+    // the smallest subtrie holding two leaves whose hashes agree below shift
+    private static Node pair(Leaf a, int ha, Leaf b, int hb, int shift) {
+        int at = (ha >>> shift) & MASK;
+        int bt = (hb >>> shift) & MASK;
+        if (at == bt)
+            return new Node(1 << at, new Object[] { pair(a, ha, b, hb, shift + BITS) });
+        int bitmap = (1 << at) | (1 << bt);
+        return new Node(bitmap, at < bt ? new Object[] { a, b } : new Object[] { b, a });
+    }
+
+    // the first visible symbols, in order of declaration
+    Symbol[] symbols(int visible) {
+        Symbol[] symbols = new Symbol[visible];
+        Link link = latest;
+        for (int i = size - 1; i >= 0; i--, link = link.next) {
+            if (i < visible)
+                symbols[i] = link.symbol;
+        }
+        return symbols;
+    }
+}
@@ -1,7 +1,14 @@
 package crux;
 
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.Iterator;
 
 public class Scanner implements Iterable<Token> {
@@ -9,152 +16,445 @@ public class Scanner implements Iterable<Token> {
     public static String studentID = "TODO: Your 8-digit id";
     public static String uciNetID = "TODO: uci-net id";
 
-    private int lineNum;  // current line count
-    private int charPos;  // character offset for current line
+    private static final int BUFFER_SIZE = 8192;
+
+    // classes of the ASCII characters, exactly as java.lang.Character has them
+    static final int WHITESPACE = 1;
+    static final int DIGIT = 2;
+    static final int IDENTIFIER = 4; // letters, digits and '_'
+    private static final byte[] CLASSES = new byte[128];
+
+    static {
+        for (char c = 0; c < CLASSES.length; c++) {
+            if (Character.isWhitespace(c))
+                CLASSES[c] |= WHITESPACE;
+            if (Character.isDigit(c))
+                CLASSES[c] |= DIGIT;
+            if (Character.isLetterOrDigit(c) || c == '_')
+                CLASSES[c] |= IDENTIFIER;
+        }
+    }
+
+    private LineIndex lines; // starts of the lines read so far
     private int nextChar; // contains the next char (-1 == EOF)
-    private Reader input;
+    private Reader input; // null once drained, or when lexing a whole buffer
+    private ByteBuffer bytes; // UTF-8 input, used instead of input when mapped
+    private CharsetDecoder decoder;
+
+    // characters are lexed out of buffer[bufferPos, bufferLimit) and the
+    // window is refilled from input whenever it runs dry
+    private char[] buffer;
+    private int bufferPos;
+    private int bufferLimit;
+    private int tokenStart; // buffer index of the lexeme being scanned (-1 == none)
+    private int windowOffset; // offset in the file of buffer[0]
+
+    // the token most recently scanned
+    private int tokenPosition; // offset in the file of its first character
+    private int tokenOffset;   // buffer index of its first character
+    private int tokenLength;
+    private String tokenError;
+
+    private InternTable names = InternTable.global();
 
     public Scanner(Reader reader) {
-        lineNum = 1;
-        charPos = 0;
+        lines = new LineIndex(1, 0);
         input = reader;
+        buffer = new char[BUFFER_SIZE];
+        bufferPos = 0;
+        bufferLimit = 0;
+        tokenStart = -1;
+        nextChar = readChar();
+    }
+
+    // Lexes the whole of source without any further I/O.
+    public Scanner(char[] source) {
+        this(source, 0, source.length);
+    }
+
+    // Lexes source[from, to), numbering the line starting at from as line 1.
+    // Offsets stay those of source, so they are simply buffer indices.
+    Scanner(char[] source, int from, int to) {
+        lines = new LineIndex(1, from);
+        input = null;
+        buffer = source;
+        bufferPos = from;
+        bufferLimit = to;
+        tokenStart = -1;
         nextChar = readChar();
     }
 
+    // Lexes UTF-8 encoded source without going through a Reader.
+    public Scanner(ByteBuffer source) {
+        lines = new LineIndex(1, 0);
+        input = null;
+        bytes = source;
+        decoder = Charset.forName("UTF-8").newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        buffer = new char[BUFFER_SIZE];
+        bufferPos = 0;
+        bufferLimit = 0;
+        tokenStart = -1;
+        nextChar = readChar();
+    }
+
+    // Lexes the file at filename out of a read-only memory mapping of it.
+    public static Scanner map(String filename) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            return new Scanner(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            file.close();
+        }
+    }
+
     public Token next() {
-        Token tok = nextImpl();
+        Token tok = token(scan());
         //System.out.println("Scanner returning: " + tok);
         return tok;
     }
 
     private int readChar() {
-        int c = -1;
+        if (bufferPos == bufferLimit && !fillBuffer())
+            return -1;
+        return buffer[bufferPos++];
+    }
+
+    // Refill the window from input, returning false once the input is exhausted.
+    // The partial lexeme starting at tokenStart is slid to the front of the window
+    // (growing it if the lexeme leaves no room) so that it stays contiguous.
+    private boolean fillBuffer() {
+        if (!hasMoreInput())
+            return false;
+
+        int kept = 0;
+        if (tokenStart >= 0) {
+            kept = bufferLimit - tokenStart;
+            char[] window = buffer;
+            if (buffer.length - kept < 2) // room for at least one surrogate pair
+                window = new char[buffer.length * 2];
+            System.arraycopy(buffer, tokenStart, window, 0, kept);
+            buffer = window;
+            tokenStart = 0;
+        }
+        windowOffset += bufferLimit - kept;
+
+        int count = (bytes != null) ? decodeBytes(kept) : readInput(kept);
+        bufferPos = kept;
+        if (-1 == count) {
+            input = null;
+            bytes = null;
+            bufferLimit = kept;
+            return false;
+        }
+
+        bufferLimit = kept + count;
+        return true;
+    }
+
+    private boolean hasMoreInput() {
+        return input != null || bytes != null;
+    }
+
+    private int readInput(int offset) {
+        int count = -1;
         try {
-            c = input.read();
-            charPos++;
+            do {
+                count = input.read(buffer, offset, buffer.length - offset);
+            } while (count == 0);
         } catch (IOException e) {
             //e.printStackTrace();
         }
 
-        if (-1 == c) {
+        if (-1 == count) {
             try {
                 input.close();
             } catch (IOException e) {
             }
         }
+        return count;
+    }
+
+    // ASCII bytes are widened straight into the window; only runs of non-ASCII
+    // bytes go through the UTF-8 decoder. An ASCII byte never occurs inside a
+    // multi-byte UTF-8 sequence, so every such run can be decoded on its own.
+    private int decodeBytes(int offset) {
+        int pos = bytes.position();
+        int end = bytes.limit();
+        if (pos == end)
+            return -1;
+
+        int out = offset;
+        while (out < buffer.length && pos < end) {
+            byte b = bytes.get(pos);
+            if (b >= 0) {
+                buffer[out++] = (char) b;
+                pos++;
+                continue;
+            }
+
+            int runEnd = pos + 1;
+            while (runEnd < end && bytes.get(runEnd) < 0)
+                runEnd++;
+
+            ByteBuffer run = bytes.duplicate();
+            run.limit(runEnd);
+            run.position(pos);
+            CharBuffer window = CharBuffer.wrap(buffer, out, buffer.length - out);
+            decoder.reset();
+            decoder.decode(run, window, true);
+            if (run.position() == pos)
+                break; // window too full for the next character
+            pos = run.position();
+            out = window.position();
+        }
 
-        return c;
+        bytes.position(pos);
+        return out - offset;
     }
 
+    // buffer index of nextChar, or the end of the window at EOF
+    private int nextCharIndex() {
+        return atEOF() ? bufferPos : bufferPos - 1;
+    }
+
+    private void beginLexeme() {
+        tokenStart = nextCharIndex();
+    }
+
+    // Ends the lexeme begun by beginLexeme(), recording where it sits in the window.
+    private Token.Kind endLexeme(Token.Kind kind) {
+        tokenOffset = tokenStart;
+        tokenLength = nextCharIndex() - tokenStart;
+        tokenStart = -1;
+        return kind;
+    }
+
+    private Token.Kind error(String message) {
+        tokenError = message;
+        return Token.Kind.ERROR;
+    }
+
+    // Builds the Token for the kind scan() just returned. Identifiers get their
+    // canonical interned name. While the window can still be refilled a number
+    // is copied out once; afterwards the token just keeps a slice of the buffer
+    // and builds its String only if asked for it.
+    private Token token(Token.Kind kind) {
+        switch (kind) {
+        case ERROR:
+            return Token.Lexeme(kind, tokenError, lines, tokenPosition);
+        case EOF:
+            return Token.EOF(lines, tokenPosition);
+        case IDENTIFIER:
+            int id = names.intern(buffer, tokenOffset, tokenLength);
+            return Token.Lexeme(kind, names.name(id), lines, tokenPosition);
+        case INTEGER:
+        case FLOAT:
+            if (hasMoreInput())
+                return Token.Lexeme(kind, new String(buffer, tokenOffset, tokenLength), lines, tokenPosition);
+            return Token.Slice(kind, buffer, tokenOffset, tokenLength, lines, tokenPosition);
+        default:
+            return Token.Static(kind, lines, tokenPosition);
+        }
+    }
+
+    // Where the token last returned by scan() starts in the input window.
+    int tokenOffset() {
+        return tokenOffset;
+    }
+
+    int tokenLength() {
+        return tokenLength;
+    }
+
+    // Where the token last returned by scan() starts in the file.
+    int tokenPosition() {
+        return tokenPosition;
+    }
+
+    // InternTable id of the identifier scan() just returned.
+    int tokenIdentifier() {
+        return names.intern(buffer, tokenOffset, tokenLength);
+    }
+
+    // The lexeme scan() just returned, copied out of the window.
+    String tokenText() {
+        return new String(buffer, tokenOffset, tokenLength);
+    }
+
+    String tokenError() {
+        return tokenError;
+    }
+
+    // The lines started so far, which covers every token scanned.
+    LineIndex lines() {
+        return lines;
+    }
+
+
     private boolean atEOF() {
         return -1 == nextChar;
     }
 
-    /* Invariants:
-     *  - readOne is called always once before return, nextChar not inspected afterward
+    // Is c (or EOF) in charClass? Only non-ASCII characters ask Character.
+    static boolean is(int c, int charClass) {
+        if (c < CLASSES.length)
+            return c >= 0 && (CLASSES[c] & charClass) != 0;
+        switch (charClass) {
+        case WHITESPACE:
+            return Character.isWhitespace(c);
+        case DIGIT:
+            return Character.isDigit(c);
+        default:
+            return Character.isLetterOrDigit(c);
+        }
+    }
+
+    /* The skip methods below move nextChar past a run of characters by walking
+     * the window directly, calling readChar() only where the window runs out.
+     * Nothing is tracked per character besides the buffer position. Runs of a
+     * class are first skipped in bulk by CharRuns as far as it can.
      */
-    private Token nextImpl() {
-        while (Character.isWhitespace(nextChar)) {
-            if ('\n' == nextChar) {
-                lineNum++;
-                charPos = 0;
+
+    private static final CharRuns RUNS = CharRuns.INSTANCE;
+
+    // Skips characters of charClass.
+    private void skip(int charClass) {
+        while (is(nextChar, charClass)) {
+            char[] window = buffer;
+            int end = bufferLimit;
+            int i = RUNS.skip(window, bufferPos, end, charClass);
+            while (i < end && is(window[i], charClass))
+                i++;
+            bufferPos = i;
+            nextChar = readChar();
+        }
+    }
+
+    // Skips whitespace, recording where each new line starts.
+    private void skipWhitespace() {
+        while (is(nextChar, WHITESPACE)) {
+            if ('\n' == nextChar)
+                lines.add(windowOffset + bufferPos);
+            char[] window = buffer;
+            int end = bufferLimit;
+            int i = RUNS.skip(window, bufferPos, end, WHITESPACE);
+            while (i < end && is(window[i], WHITESPACE)) {
+                if ('\n' == window[i])
+                    lines.add(windowOffset + i + 1);
+                i = RUNS.skip(window, i + 1, end, WHITESPACE); // the indentation after it
             }
+            bufferPos = i;
             nextChar = readChar();
         }
+    }
 
-        if (atEOF())
-            return Token.EOF(lineNum, charPos);
+    // Skips up to the '\n' that ends the current line, or to EOF.
+    private void skipLine() {
+        while (nextChar != '\n' && !atEOF()) {
+            char[] window = buffer;
+            int end = bufferLimit;
+            int i = bufferPos;
+            while (i < end && window[i] != '\n')
+                i++;
+            bufferPos = i;
+            nextChar = readChar();
+        }
+    }
+
+    /* Invariants:
+     *  - readOne is called always once before return, nextChar not inspected afterward
+     *  - tokenPosition and tokenOffset locate the returned token, and
+     *    tokenLength/tokenError its lexeme where it has one
+     */
+    Token.Kind scan() {
+        // skip whitespace and comments; a lone '/' ends the loop as a DIV token
+        while (true) {
+            skipWhitespace();
 
-        int pos = charPos;
+            tokenOffset = nextCharIndex();
+            tokenPosition = windowOffset + tokenOffset;
 
-        if (nextChar == '/') {
+            if (nextChar != '/')
+                break;
             nextChar = readChar();
-            if (nextChar == '/') {
-                while ((nextChar = readChar()) != '\n') {
-                }
-                return next();
-            }
-            return new Token("/", lineNum, pos);
-        } else if (nextChar == '=') {
+            if (nextChar != '/')
+                return Token.Kind.DIV;
+            skipLine();
+        }
+
+        if (atEOF())
+            return Token.Kind.EOF;
+
+        if (nextChar == '=') {
             nextChar = readChar();
             if (nextChar == '=') {
                 nextChar = readChar();
-                return new Token("==", lineNum, pos);
+                return Token.Kind.EQUAL;
             }
-            return new Token("=", lineNum, pos);
+            return Token.Kind.ASSIGN;
         } else if (nextChar == '<') {
             nextChar = readChar();
             if (nextChar == '=') {
                 nextChar = readChar();
-                return new Token("<=", lineNum, pos);
+                return Token.Kind.LESSER_EQUAL;
             }
-            return new Token("<", lineNum, pos);
+            return Token.Kind.LESS_THAN;
         } else if (nextChar == '>') {
             nextChar = readChar();
             if (nextChar == '=') {
                 nextChar = readChar();
-                return new Token(">=", lineNum, pos);
+                return Token.Kind.GREATER_EQUAL;
             }
-            return new Token(">", lineNum, pos);
+            return Token.Kind.GREATER_THAN;
         } else if (nextChar == ':') {
             nextChar = readChar();
             if (nextChar == ':') {
                 nextChar = readChar();
-                return new Token("::", lineNum, pos);
+                return Token.Kind.CALL;
             }
-            return new Token(":", lineNum, pos);
+            return Token.Kind.COLON;
         } else if (nextChar == '!') {
             nextChar = readChar();
             if (nextChar == '=') {
                 nextChar = readChar();
-                return new Token("!=", lineNum, pos);
-            }
-            return Token.Error("Unexpected character: " + nextChar, lineNum, pos);
-        } else if (Character.isDigit(nextChar)) {
-            String num = "";
-
-            while (Character.isDigit(nextChar)) {
-                num += (char) nextChar;
-                nextChar = readChar();
+                return Token.Kind.NOT_EQUAL;
             }
+            return error("Unexpected character: " + nextChar);
+        } else if (is(nextChar, DIGIT)) {
+            beginLexeme();
+            skip(DIGIT);
 
             if (nextChar == '.') {
-                num += (char) nextChar;
                 nextChar = readChar();
-                while (Character.isDigit(nextChar)) {
-                    num += (char) nextChar;
-                    nextChar = readChar();
-                }
-                return Token.Float(num, lineNum, pos);
+                skip(DIGIT);
+                return endLexeme(Token.Kind.FLOAT);
             }
 
-            return Token.Integer(num, lineNum, pos);
+            return endLexeme(Token.Kind.INTEGER);
         } else if (Character.isLetter(nextChar) || nextChar == '_') {
-            String ident = "";
-
-            while (Character.isLetterOrDigit(nextChar) || nextChar == '_') {
-                ident += (char) nextChar;
-                nextChar = readChar();
-            }
+            beginLexeme();
+            skip(IDENTIFIER);
 
-            for (Token.Kind t : Token.Kind.values()) {
-                if (t.matches(ident))
-                    return new Token(ident, lineNum, pos);
+            Token.Kind keyword = Token.Kind.keyword(buffer, tokenStart, nextCharIndex() - tokenStart);
+            if (keyword != null) {
+                tokenStart = -1;
+                return keyword;
             }
 
-            return Token.Identifier(ident, lineNum, pos);
+            return endLexeme(Token.Kind.IDENTIFIER);
         } else {
-            String c = Character.toString((char) nextChar);
-
-            for (Token.Kind t : Token.Kind.values()) {
-                if (t.matches(nextChar)) {
-                    nextChar = readChar();
-                    return new Token(c, lineNum, pos);
-                }
+            Token.Kind punctuation = Token.Kind.fromChar(nextChar);
+            if (punctuation != null) {
+                nextChar = readChar();
+                return punctuation;
             }
 
+            String c = Character.toString((char) nextChar);
             nextChar = readChar();
-            return Token.Error("Unexpected character: " + c, lineNum, pos);
+            return error("Unexpected character: " + c);
         }
     }
 
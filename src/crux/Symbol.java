@@ -5,18 +5,45 @@ import types.ErrorType;
 
 public class Symbol {
 
+    // where a variable lives, as decided when it is declared
+    public static enum Storage {
+        GLOBAL,    // a data label; functions are globals too
+        PARAMETER, // slot is its position in the parameter list
+        LOCAL      // slot is dense over its function's locals, in order of declaration
+    }
+
+    private static final ErrorType TYPE_NOT_SET = new ErrorType("Type not set.");
+
     private String name;
+    private int id;
     private Type type;
+    private Storage storage = Storage.GLOBAL;
+    private int slot = -1;
 
     public Symbol(String name) {
+        this(name, InternTable.global().intern(name));
+    }
+
+    Symbol(String name, int id) {
         this.name = name;
-        this.type = new ErrorType("Type not set.");
+        this.id = id;
+        clearType();
+    }
+
+    // back to the type of a symbol just declared
+    void clearType() {
+        this.type = TYPE_NOT_SET;
     }
 
     public String name() {
         return this.name;
     }
 
+    // InternTable id of name, or -1 for an error symbol
+    public int id() {
+        return this.id;
+    }
+
     public void setType(Type type) {
         this.type = type;
     }
@@ -25,17 +52,25 @@ public class Symbol {
         return type;
     }
 
+    void setStorage(Storage storage, int slot) {
+        this.storage = storage;
+        this.slot = slot;
+    }
+
+    public Storage storage() {
+        return storage;
+    }
+
+    // index among the globals, the parameters or the function's locals
+    public int slot() {
+        return slot;
+    }
+
     public String toString() {
-        return "Symbol(" + name + ":" + type + ")";
+        return "Symbol(" + name() + ":" + type + ")";
     }
 
     public static Symbol newError(String message) {
         return new ErrorSymbol(message);
     }
 }
-
-class ErrorSymbol extends Symbol {
-    public ErrorSymbol(String message) {
-        super(message);
-    }
-}
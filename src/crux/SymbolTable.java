@@ -1,25 +1,62 @@
 package crux;
 
-import java.util.Vector;
-
+/* A scope of symbols, keyed on their InternTable ids. A nested scope keeps
+ * its symbols in order of declaration, for toString(); once it holds more than
+ * a few an open-addressing index over their ids is kept as well. A global
+ * scope keeps its symbols in a PersistentScope instead, so that views of it
+ * are O(1) snapshots, safe to resolve names against from any thread.
+ */
 public class SymbolTable {
 
+    // scopes this small are scanned; hashing only pays off beyond it
+    private static final int SCAN_LIMIT = 8;
+
+    private final InternTable names; // spells the ids
     private SymbolTable parent;
-    private Vector<Symbol> table;
     private int depth;
 
+    private Symbol[] symbols; // in order of declaration
+    private int count;
+    private int[] slots;      // open addressing: index in symbols + 1, or 0 when empty
+    private int[] ids;        // id of the symbol in each slot
+
+    private PersistentScope globals; // a global scope's symbols, unless it is a view
+
+    // a view's share of a global scope: its first visible symbols
+    private PersistentScope shared;
+    private int visible;
+
     public SymbolTable() {
-        this.table = new Vector<Symbol>();
+        this(InternTable.global());
+    }
+
+    // an empty global scope over the ids of names
+    SymbolTable(InternTable names) {
+        this.names = names;
         this.parent = null;
         this.depth = 0;
+        this.globals = PersistentScope.EMPTY;
     }
 
     public SymbolTable(SymbolTable parent) {
-        this.table = new Vector<Symbol>();
+        this.names = parent.names;
         this.parent = parent;
         this.depth = parent.depth + 1;
     }
 
+    // A global scope that sees only the first visible symbols of this one, as
+    // they are now. Inserting the name of the next of them hands out that very
+    // Symbol, as though it were declared right here. Symbols the view declares
+    // beyond those are its own. This table may go on changing meanwhile, and
+    // any number of views of it may be used from as many threads.
+    SymbolTable view(int visible) {
+        SymbolTable view = new SymbolTable(names);
+        view.globals = null;
+        view.shared = globals;
+        view.visible = visible;
+        return view;
+    }
+
     public Symbol lookup(String name) throws SymbolNotFoundError {
         // option 1: Symbols are hashable (hash function of name and type)
         /*
@@ -36,20 +73,84 @@ public class SymbolTable {
         // option 2: can only store one symbol per name
         //           no function overloading
         //           can't have variable and function by same name
-        Symbol sym = get(name);
-        if (sym == null && parent != null)
-            return parent.lookup(name);
-        else if (sym == null) // && parent == null
-            throw new SymbolNotFoundError(name);
-        else
-            return sym;
+        return lookup(names.intern(name));
+    }
+
+    Symbol lookup(int id) throws SymbolNotFoundError {
+        for (SymbolTable scope = this; scope != null; scope = scope.parent) {
+            Symbol sym = scope.get(id);
+            if (sym != null)
+                return sym;
+        }
+        throw new SymbolNotFoundError(names.name(id));
     }
 
-    private Symbol get(String name) {
-        for (Symbol sym : table)
-            if (sym.name().equals(name))
+    // the symbol declared as id in this very scope, or null
+    final Symbol get(int id) {
+        if (globals != null)
+            return globals.get(id);
+        if (shared != null) {
+            Symbol sym = shared.get(id, visible);
+            if (sym != null)
                 return sym;
-        return null;
+        }
+        int i = indexOf(id);
+        return i >= 0 ? symbols[i] : null;
+    }
+
+    private static int hash(int id) {
+        return id * 0x9e3779b9;
+    }
+
+    // Where the symbol with id is in symbols, or -1.
+    private int indexOf(int id) {
+        if (slots == null) {
+            for (int i = 0; i < count; i++)
+                if (symbols[i].id() == id)
+                    return i;
+            return -1;
+        }
+        int mask = slots.length - 1;
+        for (int i = hash(id) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            if (ids[i] == id)
+                return slots[i] - 1;
+        }
+        return -1;
+    }
+
+    private void add(Symbol sym) {
+        if (symbols == null) {
+            symbols = new Symbol[SCAN_LIMIT];
+        } else if (count == symbols.length) {
+            Symbol[] bigger = new Symbol[count * 2];
+            System.arraycopy(symbols, 0, bigger, 0, count);
+            symbols = bigger;
+        }
+        symbols[count++] = sym;
+        if (slots != null && count * 2 > slots.length)
+            rehash(slots.length * 2);
+        else if (slots == null && count > SCAN_LIMIT)
+            rehash(4 * SCAN_LIMIT);
+        else if (slots != null)
+            place(count - 1);
+    }
+
+    // Indexes symbols[i], which is not indexed yet.
+    private void place(int i) {
+        int id = symbols[i].id();
+        int mask = slots.length - 1;
+        int slot = hash(id) & mask;
+        while (slots[slot] != 0)
+            slot = (slot + 1) & mask;
+        slots[slot] = i + 1;
+        ids[slot] = id;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        ids = new int[capacity];
+        for (int i = 0; i < count; i++)
+            place(i);
     }
 	
 	/*
@@ -67,15 +168,46 @@ public class SymbolTable {
         assert (name != null);
         assert (name != "");
 
-        if (contains(name))
-            throw new RedeclarationError(get(name));
-        Symbol sym = new Symbol(name);
-        table.add(sym);
+        return insert(names.intern(name));
+    }
+
+    Symbol insert(int id) throws RedeclarationError {
+        Symbol existing = get(id);
+        if (existing != null)
+            throw new RedeclarationError(existing);
+        Symbol next = shared != null ? shared.get(id, visible + 1) : null;
+        if (next != null) {
+            visible++;
+            next.clearType(); // declared afresh, so typed afresh
+            return next;
+        }
+        Symbol sym = new Symbol(names.name(id), id);
+        if (globals != null)
+            globals = globals.with(sym);
+        else
+            add(sym);
         return sym;
     }
 
-    private boolean contains(String name) {
-        return null != get(name);
+    // number of symbols declared in this scope
+    int size() {
+        if (globals != null)
+            return globals.size();
+        return visible + count;
+    }
+
+    InternTable names() {
+        return names;
+    }
+
+    // whether this is a global scope, views included
+    boolean isGlobal() {
+        return parent == null;
+    }
+
+    // whether a view declared a symbol it was not sharing
+    boolean addedSymbols() {
+        return count > 0;
     }
 
     public String toString() {
@@ -88,8 +220,13 @@ public class SymbolTable {
             indent += "  ";
         }
 
-        for (Symbol s : table) {
-            sb.append(indent + s.toString() + "\n");
+        if (globals != null || shared != null) {
+            for (Symbol s : globals != null ? globals.symbols(globals.size()) : shared.symbols(visible)) {
+                sb.append(indent + s.toString() + "\n");
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            sb.append(indent + symbols[i].toString() + "\n");
         }
         return sb.toString();
     }
@@ -97,25 +234,9 @@ public class SymbolTable {
     public SymbolTable parentTable() {
         return parent;
     }
-}
-
-class SymbolNotFoundError extends Error {
-    private static final long serialVersionUID = 1L;
-    private String name;
-
-    SymbolNotFoundError(String name) {
-        this.name = name;
-    }
-
-    public String name() {
-        return name;
-    }
-}
-
-class RedeclarationError extends Error {
-    private static final long serialVersionUID = 1L;
 
-    public RedeclarationError(Symbol sym) {
-        super("Symbol " + sym + " being redeclared.");
+    // a new scope nested in this one
+    SymbolTable childTable() {
+        return new SymbolTable(this);
     }
 }
@@ -0,0 +1,320 @@
+package crux;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import types.*;
+
+/* Parses a TokenBuffer with the LL(1) tables ParseTableGenerator makes from
+ * crux.grammar. The parse is one loop over an explicit stack of grammar
+ * symbols: a token is matched, a nonterminal replaced by the right-hand side
+ * its PREDICT entry names, and an action run. Actions build the tree Parser's
+ * rules would, declaring and resolving symbols at the same tokens, so a
+ * syntactically valid file gets the same tree and the same errors.
+ *
+ * There is no error recovery: parse() gives up with null at the first syntax
+ * error, and Parser parses that file with its rules instead.
+ */
+class TableParser {
+
+    private final TokenBuffer tokens;
+    private final Diagnostics diagnostics = new Diagnostics();
+    private SymbolTable symbolTable;
+
+    private int cursor = 0;
+    private int last = -1;   // the token matched last, for the action after it
+
+    private int[] symbols = new int[64];
+    private int symbolCount = 0;
+    private Object[] values = new Object[64];   // nodes, symbols, types and lists under construction
+    private int valueCount = 0;
+    private int[] marks = new int[64];          // tokens #mark was at
+    private int markCount = 0;
+
+    private int frameSlots; // locals declared so far in the function being parsed
+
+    // globals is the scope to parse in, holding the built-in functions
+    TableParser(TokenBuffer tokens, SymbolTable globals, boolean scopeDumps) {
+        this.tokens = tokens;
+        this.symbolTable = globals;
+        this.diagnostics.setScopeDumps(scopeDumps);
+    }
+
+    Diagnostics diagnostics() {
+        return diagnostics;
+    }
+
+    // The tree of the whole buffer, or null at a syntax error.
+    ast.Command parse() {
+        int[] predict = ParseTables.PREDICT;
+        int[] rhs = ParseTables.RHS;
+        int[] rhsStart = ParseTables.RHS_START;
+        int eof = tokens.size() - 1;
+        int kind = tokens.ordinal(cursor);
+
+        symbols[symbolCount++] = ParseTables.START;
+        while (symbolCount > 0) {
+            int symbol = symbols[--symbolCount];
+            if (symbol < ParseTables.FIRST_NONTERMINAL) {
+                if (symbol != kind)
+                    return null;
+                last = cursor;
+                if (cursor < eof)
+                    cursor++;
+                kind = tokens.ordinal(cursor);
+            } else if (symbol < ParseTables.FIRST_ACTION) {
+                int production = predict[(symbol - ParseTables.FIRST_NONTERMINAL) * ParseTables.TERMINALS + kind];
+                if (production < 0)
+                    return null;
+                int from = rhsStart[production];
+                int length = rhsStart[production + 1] - from;
+                if (symbolCount + length > symbols.length)
+                    symbols = Arrays.copyOf(symbols, Math.max(symbols.length * 2, symbolCount + length));
+                System.arraycopy(rhs, from, symbols, symbolCount, length);
+                symbolCount += length;
+            } else {
+                act(symbol - ParseTables.FIRST_ACTION);
+            }
+        }
+        return (ast.Command) values[0];
+    }
+
+    // Value and Mark Stacks ==========================================
+
+    private void push(Object value) {
+        if (valueCount == values.length)
+            values = Arrays.copyOf(values, valueCount * 2);
+        values[valueCount++] = value;
+    }
+
+    private Object pop() {
+        Object value = values[--valueCount];
+        values[valueCount] = null;
+        return value;
+    }
+
+    private Object peek() {
+        return values[valueCount - 1];
+    }
+
+    private int popMark() {
+        return marks[--markCount];
+    }
+
+    // as Parser.allocate does
+    private void allocate(Symbol sym) {
+        if (symbolTable.isGlobal())
+            Parser.allocateGlobal(sym, symbolTable);
+        else
+            sym.setStorage(Symbol.Storage.LOCAL, frameSlots++);
+    }
+
+    private int line(int token) {
+        return tokens.lineNumber(token);
+    }
+
+    private int pos(int token) {
+        return tokens.charPosition(token);
+    }
+
+    // Actions ==========================================
+
+    private void act(int action) {
+        switch (action) {
+        case ParseTables.MARK:
+            if (markCount == marks.length)
+                marks = Arrays.copyOf(marks, markCount * 2);
+            marks[markCount++] = cursor;
+            break;
+
+        // symbols and scopes
+        case ParseTables.DECLARE:
+            push(Parser.declareSymbol(symbolTable, tokens.identifier(last), diagnostics, line(cursor), pos(cursor)));
+            break;
+        case ParseTables.RESOLVE:
+            push(Parser.resolveSymbol(symbolTable, tokens.identifier(last), diagnostics, line(cursor), pos(cursor)));
+            break;
+        case ParseTables.ENTER_SCOPE:
+            symbolTable = symbolTable.childTable();
+            break;
+        case ParseTables.EXIT_SCOPE:
+            symbolTable = symbolTable.parentTable();
+            break;
+        case ParseTables.TYPE:
+            push(Type.getBaseType(tokens.lexeme(last)));
+            break;
+        case ParseTables.SET_TYPE: {
+            Type type = (Type) pop();
+            ((Symbol) peek()).setType(type);
+            break;
+        }
+
+        // declarations
+        case ParseTables.DECLARATIONS:
+            push(new ast.DeclarationList(line(cursor), pos(cursor)));
+            break;
+        case ParseTables.ADD_DECLARATION: {
+            ast.Declaration decl = (ast.Declaration) pop();
+            ((ast.DeclarationList) peek()).add(decl);
+            break;
+        }
+        case ParseTables.VARIABLE: {
+            Symbol sym = (Symbol) pop();
+            allocate(sym);
+            int at = popMark();
+            push(new ast.VariableDeclaration(line(at), pos(at), sym));
+            break;
+        }
+        case ParseTables.DIMENSION:
+            push(Integer.valueOf(tokens.lexeme(last)));
+            break;
+        case ParseTables.ARRAY: {
+            // the last dimension, on top, is the innermost
+            List<Integer> dimensions = new ArrayList<Integer>();
+            while (peek() instanceof Integer)
+                dimensions.add((Integer) pop());
+            Symbol sym = (Symbol) pop();
+            allocate(sym);
+            for (Integer dimension : dimensions)
+                sym.setType(TypeTable.array(dimension, sym.type()));
+            int at = popMark();
+            push(new ast.ArrayDeclaration(line(at), pos(at), sym));
+            break;
+        }
+        case ParseTables.PARAMETERS:
+            frameSlots = 0;
+            push(new ArrayList<Symbol>());
+            break;
+        case ParseTables.ADD_PARAMETER: {
+            Symbol param = (Symbol) pop();
+            @SuppressWarnings("unchecked")
+            List<Symbol> params = (List<Symbol>) peek();
+            param.setStorage(Symbol.Storage.PARAMETER, params.size());
+            params.add(param);
+            break;
+        }
+        case ParseTables.SIGNATURE: {
+            Type returnType = (Type) pop();
+            @SuppressWarnings("unchecked")
+            List<Symbol> params = (List<Symbol>) peek();
+            TypeList paramTypes = TypeTable.EMPTY_LIST;
+            for (Symbol s : params)
+                paramTypes = TypeTable.append(paramTypes, s.type());
+            ((Symbol) values[valueCount - 2]).setType(TypeTable.func(paramTypes, returnType));
+            break;
+        }
+        case ParseTables.FUNCTION: {
+            ast.StatementList body = (ast.StatementList) pop();
+            @SuppressWarnings("unchecked")
+            List<Symbol> params = (List<Symbol>) pop();
+            Symbol sym = (Symbol) pop();
+            Parser.allocateGlobal(sym, symbolTable);
+            int at = popMark();
+            push(new ast.FunctionDefinition(line(at), pos(at), sym, params, body));
+            break;
+        }
+
+        // statements
+        case ParseTables.STATEMENTS:
+            popMark();
+            push(new ast.StatementList(line(cursor), pos(cursor)));
+            break;
+        case ParseTables.NO_STATEMENTS: {
+            int at = popMark();
+            push(new ast.StatementList(line(at), pos(at)));
+            break;
+        }
+        case ParseTables.EMPTY_BLOCK:
+            push(new ast.StatementList(line(cursor), pos(cursor)));
+            break;
+        case ParseTables.ADD_STATEMENT: {
+            ast.Statement stmt = (ast.Statement) pop();
+            ((ast.StatementList) peek()).add(stmt);
+            break;
+        }
+        case ParseTables.ASSIGNMENT: {
+            ast.Expression source = (ast.Expression) pop();
+            ast.Expression dest = (ast.Expression) pop();
+            int at = popMark();
+            push(new ast.Assignment(line(at), pos(at), dest, source));
+            break;
+        }
+        case ParseTables.IF: {
+            ast.StatementList elseBlock = (ast.StatementList) pop();
+            ast.StatementList thenBlock = (ast.StatementList) pop();
+            ast.Expression cond = (ast.Expression) pop();
+            int at = popMark();
+            push(new ast.IfElseBranch(line(at), pos(at), cond, thenBlock, elseBlock));
+            break;
+        }
+        case ParseTables.WHILE: {
+            ast.StatementList body = (ast.StatementList) pop();
+            ast.Expression cond = (ast.Expression) pop();
+            int at = popMark();
+            push(new ast.WhileLoop(line(at), pos(at), cond, body));
+            break;
+        }
+        case ParseTables.RETURN: {
+            ast.Expression arg = (ast.Expression) pop();
+            int at = popMark();
+            push(new ast.Return(line(at), pos(at), arg));
+            break;
+        }
+
+        // expressions
+        case ParseTables.BINARY: {
+            ast.Expression rightSide = (ast.Expression) pop();
+            ast.Expression leftSide = (ast.Expression) pop();
+            int at = popMark();
+            push(ast.Command.newExpression(leftSide, tokens.kind(at), line(at), pos(at), rightSide));
+            break;
+        }
+        case ParseTables.NOT: {
+            ast.Expression expr = (ast.Expression) pop();
+            int at = popMark();
+            push(new ast.LogicalNot(line(at), pos(at), expr));
+            break;
+        }
+        case ParseTables.DEREFERENCE: {
+            ast.Expression expr = (ast.Expression) pop();
+            int at = popMark();
+            push(new ast.Dereference(line(at), pos(at), expr));
+            break;
+        }
+        case ParseTables.ADDRESS: {
+            Symbol sym = Parser.resolveSymbol(symbolTable, tokens.identifier(last), diagnostics, line(cursor), pos(cursor));
+            push(new ast.AddressOf(line(last), pos(last), sym));
+            break;
+        }
+        case ParseTables.INDEX: {
+            ast.Expression amount = (ast.Expression) pop();
+            ast.Expression base = (ast.Expression) pop();
+            int at = popMark();
+            push(new ast.Index(line(at), pos(at), base, amount));
+            break;
+        }
+        case ParseTables.CALL: {
+            ast.ExpressionList args = (ast.ExpressionList) pop();
+            Symbol func = (Symbol) pop();
+            int at = popMark();
+            push(new ast.Call(line(at), pos(at), func, args));
+            break;
+        }
+        case ParseTables.EXPRESSIONS:
+            push(new ast.ExpressionList(line(cursor), pos(cursor)));
+            break;
+        case ParseTables.ADD_EXPRESSION: {
+            ast.Expression expr = (ast.Expression) pop();
+            ((ast.ExpressionList) peek()).add(expr);
+            break;
+        }
+        case ParseTables.LITERAL:
+            push(ast.Command.newLiteral(tokens.kind(last), tokens.lexeme(last), line(last), pos(last)));
+            break;
+
+        default:
+            throw new IllegalStateException("no action " + action + "; regenerate ParseTables");
+        }
+    }
+}
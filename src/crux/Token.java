@@ -1,5 +1,7 @@
 package crux;
 
+import java.util.HashMap;
+
 public class Token {
 
     public static enum Kind {
@@ -51,7 +53,7 @@ public class Token {
         ERROR(),
         EOF();
 
-        private String default_lexeme;
+        String default_lexeme;
 
         Kind() {
             default_lexeme = "";
@@ -70,53 +72,161 @@ public class Token {
             return default_lexeme.equals(lexeme);
         }
 
+        public boolean matches(char[] text, int offset, int length) {
+            if (default_lexeme.length() != length)
+                return false;
+            for (int i = 0; i < length; i++) {
+                if (default_lexeme.charAt(i) != text[offset + i])
+                    return false;
+            }
+            return true;
+        }
+
         public boolean hasStaticLexeme() {
             return default_lexeme != "";
         }
+
+        private static final HashMap<String, Kind> byLexeme = new HashMap<String, Kind>();
+        private static final Kind[] byChar = new Kind[128];
+
+        static {
+            for (Kind kind : values()) {
+                if (!kind.hasStaticLexeme())
+                    continue;
+                byLexeme.put(kind.default_lexeme, kind);
+                if (kind.default_lexeme.length() == 1)
+                    byChar[kind.default_lexeme.charAt(0)] = kind;
+            }
+        }
+
+        // Returns the kind whose static lexeme is exactly lexeme, or null.
+        public static Kind fromLexeme(String lexeme) {
+            return byLexeme.get(lexeme);
+        }
+
+        // Returns the kind of the single character token c, or null.
+        public static Kind fromChar(int c) {
+            if (c < 0 || c >= byChar.length)
+                return null;
+            return byChar[c];
+        }
+
+        // Returns the keyword spelled by text[offset, offset+length), or null
+        // for an ordinary identifier. No two keywords share both their length
+        // and first letter, so one candidate is picked and then compared.
+        public static Kind keyword(char[] text, int offset, int length) {
+            Kind candidate = null;
+            switch (length) {
+            case 2:
+                switch (text[offset]) {
+                case 'i': candidate = IF; break;
+                case 'o': candidate = OR; break;
+                }
+                break;
+            case 3:
+                switch (text[offset]) {
+                case 'a': candidate = AND; break;
+                case 'l': candidate = LET; break;
+                case 'n': candidate = NOT; break;
+                case 'v': candidate = VAR; break;
+                }
+                break;
+            case 4:
+                switch (text[offset]) {
+                case 'e': candidate = ELSE; break;
+                case 'f': candidate = FUNC; break;
+                case 't': candidate = TRUE; break;
+                }
+                break;
+            case 5:
+                switch (text[offset]) {
+                case 'a': candidate = ARRAY; break;
+                case 'f': candidate = FALSE; break;
+                case 'w': candidate = WHILE; break;
+                }
+                break;
+            case 6:
+                if (text[offset] == 'r')
+                    candidate = RETURN;
+                break;
+            }
+
+            if (candidate != null && candidate.matches(text, offset, length))
+                return candidate;
+            return null;
+        }
     }
 
-    private int lineNum;
-    private int charPos;
+    private LineIndex lines; // null for a token given its position outright
+    private int position; // offset of the token's first character in its file
+    private int lineNum;  // the line of a token with no lines; position is then charPos - 1
     Kind kind;
     private String lexeme = "";
 
+    // lexeme not yet materialized: a slice of the scanner's input
+    private char[] source;
+    private int offset;
+    private int length;
+
     public static Token Error(String description, int linePos, int charPos) {
-        Token tok = new Token(linePos, charPos);
-        tok.kind = Kind.ERROR;
-        tok.lexeme = description;
-        return tok;
+        return at(Lexeme(Kind.ERROR, description, null, charPos - 1), linePos);
     }
 
     public static Token EOF(int linePos, int charPos) {
-        Token tok = new Token(linePos, charPos);
+        return at(EOF(null, charPos - 1), linePos);
+    }
+
+    public static Token Identifier(String name, int linePos, int charPos) {
+        return at(Lexeme(Kind.IDENTIFIER, name, null, charPos - 1), linePos);
+    }
+
+    public static Token Integer(String value, int linePos, int charPos) {
+        return at(Lexeme(Kind.INTEGER, value, null, charPos - 1), linePos);
+    }
+
+    public static Token Float(String value, int linePos, int charPos) {
+        return at(Lexeme(Kind.FLOAT, value, null, charPos - 1), linePos);
+    }
+
+    // puts a token made without lines on line lineNum
+    private static Token at(Token tok, int lineNum) {
+        tok.lineNum = lineNum;
+        return tok;
+    }
+
+    static Token EOF(LineIndex lines, int position) {
+        Token tok = new Token(lines, position);
         tok.kind = Kind.EOF;
         return tok;
     }
 
-    public static Token Identifier(String name, int linePos, int charPos) {
-        Token tok = new Token(linePos, charPos);
-        tok.kind = Kind.IDENTIFIER;
-        tok.lexeme = name;
+    static Token Static(Kind kind, LineIndex lines, int position) {
+        Token tok = new Token(lines, position);
+        tok.kind = kind;
+        tok.lexeme = "";
         return tok;
     }
 
-    public static Token Integer(String value, int linePos, int charPos) {
-        Token tok = new Token(linePos, charPos);
-        tok.kind = Kind.INTEGER;
-        tok.lexeme = value;
+    static Token Lexeme(Kind kind, String lexeme, LineIndex lines, int position) {
+        Token tok = new Token(lines, position);
+        tok.kind = kind;
+        tok.lexeme = lexeme;
         return tok;
     }
 
-    public static Token Float(String value, int linePos, int charPos) {
-        Token tok = new Token(linePos, charPos);
-        tok.kind = Kind.FLOAT;
-        tok.lexeme = value;
+    // The token keeps a reference to source, which must not be modified afterward.
+    static Token Slice(Kind kind, char[] source, int offset, int length, LineIndex lines, int position) {
+        Token tok = new Token(lines, position);
+        tok.kind = kind;
+        tok.source = source;
+        tok.offset = offset;
+        tok.length = length;
         return tok;
     }
 
-    private Token(int lineNum, int charPos) {
-        this.lineNum = lineNum;
-        this.charPos = charPos;
+    private Token(LineIndex lines, int position) {
+        this.lines = lines;
+        this.position = position;
 
         // if we don't match anything, signal error
         this.kind = Kind.ERROR;
@@ -124,14 +234,14 @@ public class Token {
     }
 
     public Token(String lexeme, int lineNum, int charPos) {
+        this.lines = null;
+        this.position = charPos - 1;
         this.lineNum = lineNum;
-        this.charPos = charPos;
 
-        for (Kind tok : Token.Kind.values()) {
-            if (tok.matches(lexeme)) {
-                this.kind = tok;
-                return;
-            }
+        Kind tok = Kind.fromLexeme(lexeme);
+        if (tok != null) {
+            this.kind = tok;
+            return;
         }
 
         // if we don't match anything, signal error
@@ -140,15 +250,25 @@ public class Token {
     }
 
     public int lineNumber() {
-        return lineNum;
+        if (lines == null)
+            return lineNum;
+        return lines.lineNumber(position);
     }
 
     public int charPosition() {
-        return charPos;
+        if (lines == null)
+            return position + 1;
+        return lines.charPosition(position);
     }
 
     public String lexeme() {
-        return kind.hasStaticLexeme() ? kind.default_lexeme : lexeme;
+        if (kind.hasStaticLexeme())
+            return kind.default_lexeme;
+        if (source != null) {
+            lexeme = new String(source, offset, length);
+            source = null;
+        }
+        return lexeme;
     }
 
     public String toString() {
@@ -158,9 +278,9 @@ public class Token {
             str += "(" + lexeme() + ")";
 
         str += "(";
-        str += "lineNum:" + lineNum;
+        str += "lineNum:" + lineNumber();
         str += ", ";
-        str += "charPos:" + charPos;
+        str += "charPos:" + charPosition();
         str += ")";
 
         return str;
@@ -202,8 +322,8 @@ public class Token {
 
         return this.kind == tok.kind
                 && this.lexeme().equals(tok.lexeme())
-                && this.lineNum == tok.lineNum
-                && this.charPos == tok.charPos;
+                && this.lineNumber() == tok.lineNumber()
+                && this.charPosition() == tok.charPosition();
     }
 
     public Kind kind() {
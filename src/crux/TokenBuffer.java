@@ -0,0 +1,317 @@
+package crux;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/* A whole file worth of tokens, stored column-wise:
+ *  - kinds[i] is the ordinal of token i's Token.Kind
+ *  - starts[i] and lengths[i] locate its lexeme in the source text
+ * Lines and columns are recovered from the offsets through the LineIndex the
+ * scanner recorded, only when asked for, so the parser can walk
+ * the buffer by index without a Token object per token.
+ */
+public class TokenBuffer {
+
+    private static final Token.Kind[] KINDS = Token.Kind.values();
+
+    private char[] source;
+    private byte[] kinds;
+    private int[] starts;
+    private int[] lengths;
+    private int size;
+    private LineIndex lines;
+    private HashMap<Integer, String> errors; // messages of ERROR tokens
+    private int[] identifiers; // InternTable ids, once internIdentifiers() ran
+    private InternTable names = InternTable.global(); // where those ids come from
+
+    // files smaller than this many characters per chunk are lexed sequentially
+    private static final int MIN_CHUNK = 64 * 1024;
+
+    // Lexes all of source; source must not be modified afterward.
+    public static TokenBuffer lex(char[] source) {
+        return lexRange(source, 0, source.length, true);
+    }
+
+    // The same, with identifiers interned into names rather than the global table.
+    static TokenBuffer lex(char[] source, InternTable names) {
+        TokenBuffer tokens = lex(source);
+        tokens.names = names;
+        return tokens;
+    }
+
+    /* Lexes source in chunks on pool and stitches the results together; the
+     * tokens are exactly those of lex(source). Chunks are split just after a
+     * newline: no Crux token spans a line and a "//" comment always ends at
+     * the newline, so the scanner is in its initial state there. Positions are
+     * kept as offsets into the whole of source, so no chunk needs to know what
+     * line it starts on.
+     */
+    public static TokenBuffer lex(char[] source, ForkJoinPool pool) {
+        int chunks = Math.min(pool.getParallelism() * 4, source.length / MIN_CHUNK);
+        if (chunks < 2)
+            return lex(source);
+
+        int[] bounds = new int[chunks + 1];
+        bounds[chunks] = source.length;
+        for (int i = 1; i < chunks; i++) {
+            int at = Math.max(bounds[i - 1], (int) ((long) source.length * i / chunks));
+            while (at > 0 && at < source.length && source[at - 1] != '\n')
+                at++;
+            bounds[i] = at;
+        }
+
+        final List<LexChunk> tasks = new ArrayList<LexChunk>();
+        for (int i = 0; i < chunks; i++)
+            tasks.add(new LexChunk(source, bounds[i], bounds[i + 1], i == chunks - 1));
+        pool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        List<TokenBuffer> parts = new ArrayList<TokenBuffer>();
+        for (LexChunk task : tasks)
+            parts.add(task.join());
+        return concat(source, parts);
+    }
+
+    private static class LexChunk extends RecursiveTask<TokenBuffer> {
+        private static final long serialVersionUID = 1L;
+
+        private final char[] source;
+        private final int from;
+        private final int to;
+        private final boolean last;
+
+        LexChunk(char[] source, int from, int to, boolean last) {
+            this.source = source;
+            this.from = from;
+            this.to = to;
+            this.last = last;
+        }
+
+        @Override
+        protected TokenBuffer compute() {
+            return lexRange(source, from, to, last);
+        }
+    }
+
+    // Lexes source[from, to), which starts a line. Only the last range of a file
+    // keeps its EOF token.
+    private static TokenBuffer lexRange(char[] source, int from, int to, boolean last) {
+        TokenBuffer tokens = new TokenBuffer(source, Math.max(16, (to - from) / 4));
+        Scanner scanner = new Scanner(source, from, to);
+        Token.Kind kind = scanner.scan();
+        while (kind != Token.Kind.EOF) {
+            tokens.add(kind, scanner.tokenOffset(), scanner.tokenLength(), scanner.tokenError());
+            kind = scanner.scan();
+        }
+        if (last)
+            tokens.add(kind, scanner.tokenOffset(), scanner.tokenLength(), scanner.tokenError());
+        tokens.lines = scanner.lines();
+        return tokens;
+    }
+
+    private static TokenBuffer concat(char[] source, List<TokenBuffer> parts) {
+        int tokenCount = 0;
+        for (TokenBuffer part : parts)
+            tokenCount += part.size;
+
+        // each range after the first starts on a line its predecessor recorded
+        TokenBuffer whole = new TokenBuffer(source, tokenCount);
+        whole.lines = parts.get(0).lines;
+        for (TokenBuffer part : parts) {
+            System.arraycopy(part.kinds, 0, whole.kinds, whole.size, part.size);
+            System.arraycopy(part.starts, 0, whole.starts, whole.size, part.size);
+            System.arraycopy(part.lengths, 0, whole.lengths, whole.size, part.size);
+            for (Map.Entry<Integer, String> error : part.errors.entrySet())
+                whole.errors.put(whole.size + error.getKey(), error.getValue());
+            whole.size += part.size;
+            if (part != parts.get(0))
+                whole.lines.append(part.lines);
+        }
+        return whole;
+    }
+
+    /* The tokens of source, which is this buffer's source with the stretch
+     * [from, to) replaced by [from, to + delta). from must start a line and to
+     * start one or end the file; then no token straddles either end, and only
+     * the stretch between them is lexed again. Tokens after it are copied with
+     * their offsets moved along by delta.
+     */
+    TokenBuffer relex(char[] source, int from, int to, int delta) {
+        int first = indexAt(from);
+        int last = to == this.source.length ? size : indexAt(to);
+        TokenBuffer region = lexRange(source, from, to + delta, to + delta == source.length);
+
+        TokenBuffer spliced = new TokenBuffer(source, Math.max(1, first + region.size + size - last));
+        spliced.append(this, 0, first, 0);
+        spliced.append(region, 0, region.size, 0);
+        spliced.append(this, last, size, delta);
+        spliced.lines = lines.splice(from, to, region.lines, delta);
+        spliced.names = names;
+        return spliced;
+    }
+
+    // Adds tokens [from, to) of other, their offsets moved along by delta.
+    private void append(TokenBuffer other, int from, int to, int delta) {
+        int n = to - from;
+        System.arraycopy(other.kinds, from, kinds, size, n);
+        System.arraycopy(other.lengths, from, lengths, size, n);
+        for (int i = 0; i < n; i++)
+            starts[size + i] = other.starts[from + i] + delta;
+        for (Map.Entry<Integer, String> error : other.errors.entrySet()) {
+            int index = error.getKey();
+            if (from <= index && index < to)
+                errors.put(size + index - from, error.getValue());
+        }
+        size += n;
+    }
+
+    private TokenBuffer(char[] source, int tokenCapacity) {
+        this.source = source;
+        this.kinds = new byte[tokenCapacity];
+        this.starts = new int[tokenCapacity];
+        this.lengths = new int[tokenCapacity];
+        this.size = 0;
+        this.errors = new HashMap<Integer, String>();
+    }
+
+    private static int[] grow(int[] array) {
+        int[] bigger = new int[array.length * 2];
+        System.arraycopy(array, 0, bigger, 0, array.length);
+        return bigger;
+    }
+
+    private void add(Token.Kind kind, int start, int length, String error) {
+        if (size == kinds.length) {
+            byte[] biggerKinds = new byte[size * 2];
+            System.arraycopy(kinds, 0, biggerKinds, 0, size);
+            kinds = biggerKinds;
+            starts = grow(starts);
+            lengths = grow(lengths);
+        }
+        kinds[size] = (byte) kind.ordinal();
+        starts[size] = start;
+        if (kind == Token.Kind.ERROR)
+            errors.put(size, error);
+        if (kind.hasStaticLexeme())
+            length = kind.default_lexeme.length();
+        else if (kind == Token.Kind.ERROR || kind == Token.Kind.EOF)
+            length = 0;
+        lengths[size] = length;
+        size++;
+    }
+
+    // number of tokens, including the trailing EOF
+    public int size() {
+        return size;
+    }
+
+    public Token.Kind kind(int index) {
+        return KINDS[kinds[index]];
+    }
+
+    // Token.Kind ordinal of token index, for table lookups
+    int ordinal(int index) {
+        return kinds[index];
+    }
+
+    public boolean is(int index, Token.Kind kind) {
+        return kinds[index] == kind.ordinal();
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    // index of the first token starting at or after offset
+    public int indexAt(int offset) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < offset)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    public char[] source() {
+        return source;
+    }
+
+    public int lineNumber(int index) {
+        return lines.lineNumber(starts[index]);
+    }
+
+    public int charPosition(int index) {
+        return lines.charPosition(starts[index]);
+    }
+
+    public String lexeme(int index) {
+        Token.Kind kind = kind(index);
+        if (kind.hasStaticLexeme())
+            return kind.default_lexeme;
+        if (kind == Token.Kind.ERROR || kind == Token.Kind.EOF)
+            return token(index).lexeme();
+        if (kind == Token.Kind.IDENTIFIER)
+            return names.name(identifier(index));
+        return new String(source, starts[index], lengths[index]);
+    }
+
+    // InternTable id of identifier token index
+    public int identifier(int index) {
+        if (identifiers != null)
+            return identifiers[index];
+        return names.intern(source, starts[index], lengths[index]);
+    }
+
+    InternTable names() {
+        return names;
+    }
+
+    // Interns every identifier now, so that identifier() afterward is a plain
+    // array read; threads parsing parts of the buffer then share no lock.
+    void internIdentifiers() {
+        int[] ids = new int[size];
+        for (int i = 0; i < size; i++) {
+            if (kinds[i] == Token.Kind.IDENTIFIER.ordinal())
+                ids[i] = names.intern(source, starts[i], lengths[i]);
+        }
+        identifiers = ids;
+    }
+
+    // Materializes token index as a Token, for callers that want one.
+    public Token token(int index) {
+        Token.Kind kind = kind(index);
+        int position = starts[index];
+        switch (kind) {
+        case ERROR:
+            return Token.Lexeme(kind, errors.get(index), lines, position);
+        case EOF:
+            return Token.EOF(lines, position);
+        case IDENTIFIER:
+            return Token.Lexeme(kind, lexeme(index), lines, position);
+        case INTEGER:
+        case FLOAT:
+            return Token.Slice(kind, source, position, lengths[index], lines, position);
+        default:
+            return Token.Static(kind, lines, position);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package crux;
+
+import java.util.Arrays;
+
+/* The tokens a Scanner is lexing, seen through a small ring of lookahead:
+ * peek(k) is the kind of the token k after the current one, and the tokens
+ * from a mark() on are kept until reset() goes back to it or release() drops
+ * it, so a parser can try a rule and back out without lexing anything twice.
+ *
+ * Tokens are held column-wise like in TokenBuffer, with identifiers as their
+ * InternTable ids, so none needs a Token object; only number lexemes are
+ * copied out of the scanner's window. The ring is refilled a batch of tokens
+ * at a time, and grows only when a mark or a peek reaches further back or
+ * ahead than it holds.
+ */
+class TokenRing {
+
+    private static final Token.Kind[] KINDS = Token.Kind.values();
+    private static final int CAPACITY = 64; // a power of two
+    private static final int BATCH = 16;    // tokens scanned per refill
+
+    private final Scanner scanner;
+
+    // token i lives in slot i & mask
+    private byte[] kinds = new byte[CAPACITY];
+    private int[] positions = new int[CAPACITY];
+    private int[] identifiers = new int[CAPACITY];
+    private String[] lexemes = new String[CAPACITY]; // of numbers and errors
+    private int mask = CAPACITY - 1;
+
+    private int head = 0;         // the current token
+    private int end = 0;          // one past the last token scanned
+    private boolean eof = false;  // whether that one was the EOF
+
+    private int[] marks = new int[8];
+    private int markCount = 0;
+
+    TokenRing(Scanner scanner) {
+        this.scanner = scanner;
+    }
+
+    // Index of the token k after the current one, scanned if need be; past
+    // the end of the input that is the EOF.
+    private int at(int k) {
+        int index = head + k;
+        if (index >= end) {
+            fill(index);
+            if (index >= end)
+                return end - 1;
+        }
+        return index;
+    }
+
+    // Scans until token index is in the ring or the input ends, a batch at a time.
+    private void fill(int index) {
+        int want = Math.max(index + 1, end + BATCH);
+        while (end < want && !eof) {
+            int oldest = markCount > 0 ? marks[0] : head;
+            if (end - oldest == kinds.length) {
+                if (end > index)
+                    return; // the batch would overwrite kept tokens
+                grow(oldest);
+            }
+            int slot = end & mask;
+            Token.Kind kind = scanner.scan();
+            kinds[slot] = (byte) kind.ordinal();
+            positions[slot] = scanner.tokenPosition();
+            switch (kind) {
+            case IDENTIFIER:
+                lexemes[slot] = null;
+                identifiers[slot] = scanner.tokenIdentifier();
+                break;
+            case INTEGER:
+            case FLOAT:
+                lexemes[slot] = scanner.tokenText();
+                break;
+            case ERROR:
+                lexemes[slot] = scanner.tokenError();
+                break;
+            default:
+                lexemes[slot] = null;
+                eof = kind == Token.Kind.EOF;
+            }
+            end++;
+        }
+    }
+
+    // Doubles the ring, keeping tokens [oldest, end) in their slots under the new mask.
+    private void grow(int oldest) {
+        int capacity = kinds.length * 2;
+        byte[] newKinds = new byte[capacity];
+        int[] newPositions = new int[capacity];
+        int[] newIdentifiers = new int[capacity];
+        String[] newLexemes = new String[capacity];
+        for (int i = oldest; i < end; i++) {
+            int from = i & mask;
+            int to = i & (capacity - 1);
+            newKinds[to] = kinds[from];
+            newPositions[to] = positions[from];
+            newIdentifiers[to] = identifiers[from];
+            newLexemes[to] = lexemes[from];
+        }
+        kinds = newKinds;
+        positions = newPositions;
+        identifiers = newIdentifiers;
+        lexemes = newLexemes;
+        mask = capacity - 1;
+    }
+
+    // Slot of the token k after the current one. Taken before reading any
+    // column, as scanning it may grow the ring.
+    private int slot(int k) {
+        return at(k) & mask;
+    }
+
+    // kind of the token k after the current one; peek(0) is the current token's
+    Token.Kind peek(int k) {
+        int slot = slot(k);
+        return KINDS[kinds[slot]];
+    }
+
+    // moves to the next token, staying put on EOF
+    void advance() {
+        int index = at(0);
+        if (!eof || index < end - 1)
+            head = index + 1;
+    }
+
+    // Keeps the tokens from the current one on, until reset() or release().
+    // Marks nest.
+    void mark() {
+        if (markCount == marks.length)
+            marks = Arrays.copyOf(marks, markCount * 2);
+        marks[markCount++] = head;
+    }
+
+    // Goes back to the token the latest mark() was at, dropping that mark.
+    void reset() {
+        head = marks[--markCount];
+    }
+
+    // Drops the latest mark, staying where the parse is.
+    void release() {
+        markCount--;
+    }
+
+    int lineNumber(int k) {
+        int slot = slot(k);
+        return scanner.lines().lineNumber(positions[slot]);
+    }
+
+    int charPosition(int k) {
+        int slot = slot(k);
+        return scanner.lines().charPosition(positions[slot]);
+    }
+
+    // InternTable id of the identifier k tokens ahead
+    int identifier(int k) {
+        int slot = slot(k);
+        return identifiers[slot];
+    }
+
+    String lexeme(int k) {
+        int slot = slot(k);
+        Token.Kind kind = KINDS[kinds[slot]];
+        if (kind.hasStaticLexeme())
+            return kind.default_lexeme;
+        if (kind == Token.Kind.IDENTIFIER)
+            return InternTable.global().name(identifiers[slot]);
+        if (kind == Token.Kind.EOF)
+            return Token.EOF(scanner.lines(), positions[slot]).lexeme();
+        return lexemes[slot];
+    }
+}
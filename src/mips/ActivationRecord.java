@@ -1,6 +1,6 @@
 package mips;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
 import crux.Symbol;
 import types.*;
@@ -14,9 +14,9 @@ public class ActivationRecord
 
         }
         if (
-                t.equivalent(new IntType()) ||
-                        t.equivalent(new BoolType()) ||
-                        t.equivalent(new FloatType())
+                t.equivalent(TypeTable.INT) ||
+                        t.equivalent(TypeTable.BOOL) ||
+                        t.equivalent(TypeTable.FLOAT)
                 )  {
             return 4;
 
@@ -33,8 +33,9 @@ public class ActivationRecord
     private ast.FunctionDefinition func;
     private ActivationRecord parent;
     private int stackSize;
-    private HashMap<Symbol, Integer> locals;
-    private HashMap<Symbol, Integer> arguments;
+    // $fp offsets, indexed by the frame slots the parser gave each symbol
+    private int[] locals;
+    private int[] arguments;
     
     public static ActivationRecord newGlobalFrame()
     {
@@ -70,14 +71,14 @@ public class ActivationRecord
         this.func = fd;
         this.parent = parent;
         this.stackSize = 0;
-        this.locals = new HashMap<Symbol, Integer>();
+        this.locals = new int[8];
         
-        // map this function's parameters
-        this.arguments = new HashMap<Symbol, Integer>();
+        // map this function's parameters; parameter i has slot i
+        this.arguments = new int[fd.arguments().size()];
         int offset = 0;
         for (int i=fd.arguments().size()-1; i>=0; --i) {
             Symbol arg = fd.arguments().get(i);
-            arguments.put(arg, offset);
+            arguments[i] = offset;
             offset += numBytes(arg.type());
         }
     }
@@ -100,7 +101,10 @@ public class ActivationRecord
     public void add(Program prog, ast.VariableDeclaration var)
     {
         stackSize += getSize(var.symbol().type());
-       locals.put(var.symbol(), -stackSize);
+        int slot = var.symbol().slot();
+        if (slot >= locals.length)
+            locals = Arrays.copyOf(locals, Math.max(slot + 1, locals.length * 2));
+        locals[slot] = -stackSize;
     }
     
     public void add(Program prog, ast.ArrayDeclaration array)
@@ -110,43 +114,57 @@ public class ActivationRecord
     
     public void getAddress(Program prog, String reg, Symbol sym)
     {
-     if (locals.containsKey(sym))
-         prog.appendInstruction("addi " + reg + ", $fp, " + (locals.get(sym) - fixedFrameSize));
-       else if (arguments.containsKey(sym))
-         prog.appendInstruction("addi " + reg + ", $fp, " + arguments.get(sym));
-        else {
-         parent.getAddress(prog,reg,sym);
-     }
+        switch (sym.storage()) {
+        case LOCAL:
+            prog.appendInstruction("addi " + reg + ", $fp, " + (locals[sym.slot()] - fixedFrameSize));
+            break;
+        case PARAMETER:
+            prog.appendInstruction("addi " + reg + ", $fp, " + arguments[sym.slot()]);
+            break;
+        default:
+            parent.getAddress(prog, reg, sym);
+        }
     }
 }
 
 class GlobalFrame extends ActivationRecord
 {
+    // mangled data label of each global, indexed by the InternTable id of its name
+    private String[] datanames;
+
     public GlobalFrame()
     {
+        datanames = new String[64];
     }
     
-    private String mangleDataname(String name)
+    private String mangleDataname(Symbol sym)
     {
-        return "cruxdata." + name;
+        int id = sym.id();
+        if (id < 0)
+            return "cruxdata." + sym.name();
+        if (id >= datanames.length)
+            datanames = Arrays.copyOf(datanames, Math.max(id + 1, datanames.length * 2));
+        if (datanames[id] == null)
+            datanames[id] = "cruxdata." + sym.name();
+        return datanames[id];
     }
     
     @Override
     public void add(Program prog, ast.VariableDeclaration var)
     {
-        prog.appendData(mangleDataname(var.symbol().name()) + ": .space " + numBytes(var.symbol().type()));
+        prog.appendData(mangleDataname(var.symbol()) + ": .space " + numBytes(var.symbol().type()));
     }    
     
     @Override
     public void add(Program prog, ast.ArrayDeclaration array)
     {
 
-        prog.appendData(mangleDataname(array.symbol().name()) +  ": .space " + numBytes(array.symbol().type()));
+        prog.appendData(mangleDataname(array.symbol()) +  ": .space " + numBytes(array.symbol().type()));
     }
         
     @Override
     public void getAddress(Program prog, String reg, Symbol sym)
     {
-         prog.appendInstruction("la " + reg + ", " + mangleDataname(sym.name()));
+         prog.appendInstruction("la " + reg + ", " + mangleDataname(sym));
     }
 }
@@ -4,16 +4,21 @@ package mips;
 import ast.*;
 import types.*;
 
+import java.util.Stack;
 import java.util.concurrent.Callable;
 
 
-public class CodeGen implements ast.CommandVisitor {
+// Generates code for a tree by a Walk: branches and loops get their labels as
+// they are entered, and their jumps as each part is done.
+public class CodeGen implements ast.WalkVisitor {
 
-    private StringBuilder errorBuffer = new StringBuilder();
+    private crux.Diagnostics diagnostics = new crux.Diagnostics();
     private TypeChecker tc;
     private Program program;
     private String rLab;
     private ActivationRecord currentFunction;
+    private int functionStart; // instruction of the current function's label
+    private Stack<String[]> labels = new Stack<String[]>(); // of the open branches and loops
 
     public CodeGen(TypeChecker tc) {
         this.tc = tc;
@@ -21,11 +26,15 @@ public class CodeGen implements ast.CommandVisitor {
     }
 
     public boolean hasError() {
-        return errorBuffer.length() != 0;
+        return diagnostics.hasError();
     }
 
     public String errorReport() {
-        return errorBuffer.toString();
+        return diagnostics.report();
+    }
+
+    public crux.Diagnostics diagnostics() {
+        return diagnostics;
     }
 
     private class CodeGenException extends RuntimeException {
@@ -40,7 +49,7 @@ public class CodeGen implements ast.CommandVisitor {
 
         try {
             currentFunction = ActivationRecord.newGlobalFrame();
-            ast.accept(this);
+            Walk.walk(ast, this);
 
         } catch (CodeGenException cge) {
             return true;
@@ -53,9 +62,9 @@ public class CodeGen implements ast.CommandVisitor {
     }
 
     public void popType(String register, Type t) {
-        if (t.equivalent(new FloatType())) {
+        if (t.equivalent(TypeTable.FLOAT)) {
             program.popFloat(register);
-        } else if ( t.equivalent(new IntType()) || t.equivalent(new BoolType()))
+        } else if ( t.equivalent(TypeTable.INT) || t.equivalent(TypeTable.BOOL))
             program.popInt(register);
 
     }
@@ -72,31 +81,63 @@ public class CodeGen implements ast.CommandVisitor {
 
 
     @Override
-    public void visit(ExpressionList node) {
-        for (Expression expr : node) {
-            expr.accept(this);
+    public void enter(Command node) {
+        if (node instanceof FunctionDefinition) {
+            FunctionDefinition func = (FunctionDefinition)node;
+            rLab = program.newLabel();
+            currentFunction = new ActivationRecord(func, currentFunction);
+            String funcName = func.symbol().name().equals("main") ? func.symbol().name() : "cruxfunc." + func.function().name();
+            functionStart = program.appendInstruction(funcName + ":");
+        } else if (node instanceof LogicalNot || node instanceof IfElseBranch) {
+            String f = program.newLabel();
+            String p = program.newLabel();
+            labels.push(new String[] { f, p });
+        } else if (node instanceof WhileLoop) {
+            String c = program.newLabel();
+            String j = program.newLabel();
+            labels.push(new String[] { c, j });
+            program.appendInstruction(c + ":");
         }
     }
 
     @Override
-    public void visit(DeclarationList node) {
-        for (Declaration decl : node) {
-            decl.accept(this);
+    public void after(Command parent, Command child) {
+        if (parent instanceof StatementList) {
+            if (child instanceof Call) {
+                Type retType = tc.getType(child);
+                if (!retType.equivalent(TypeTable.VOID))
+                   popType("$t0",retType);
+
+            }
+        } else if (parent instanceof IfElseBranch) {
+            IfElseBranch branch = (IfElseBranch)parent;
+            String e = labels.peek()[0];
+            String j = labels.peek()[1];
+            if (child == branch.condition()) {
+                program.popInt("$t7");
+                program.appendInstruction("beqz $t7, " + e);
+            } else if (child == branch.thenBlock()) {
+                program.appendInstruction("b " + j);
+                program.appendInstruction(e + ":");
+            }
+        } else if (parent instanceof WhileLoop) {
+            if (child == ((WhileLoop)parent).condition()) {
+                program.popInt("$t7");
+                program.appendInstruction("beqz $t7, " + labels.peek()[1]);
+            }
         }
     }
 
+    @Override
+    public void visit(ExpressionList node) {
+    }
 
+    @Override
+    public void visit(DeclarationList node) {
+    }
 
+    @Override
     public void visit(StatementList node) {
-        for (Statement s : node) {
-            s.accept(this);
-            if (s instanceof Call) {
-                Type retType = tc.getType((Call)s);
-                if (!retType.equivalent(new VoidType()))
-                   popType("$t0",retType);
-
-            }
-        }
     }
 
     @Override
@@ -139,15 +180,10 @@ public class CodeGen implements ast.CommandVisitor {
 
     @Override
     public void visit(FunctionDefinition node) {
-        rLab = program.newLabel();
-        currentFunction = new ActivationRecord(node, currentFunction);
-        String funcName = node.symbol().name().equals("main") ? node.symbol().name() : "cruxfunc." + node.function().name();
-        int iPos = program.appendInstruction(funcName + ":");
-        node.body().accept(this);
-        program.insertPrologue((iPos + 1), currentFunction.stackSize());
+        program.insertPrologue((functionStart + 1), currentFunction.stackSize());
         program.appendInstruction(rLab + ":");
         Type t = tc.getType(node);
-        if (!t.equivalent(new VoidType()))
+        if (!t.equivalent(TypeTable.VOID))
            popType("$v0",t);
 
         program.appendEpilogue(currentFunction.stackSize(),  node.symbol().name().equals("main"));
@@ -156,14 +192,12 @@ public class CodeGen implements ast.CommandVisitor {
 
     @Override
     public void visit(Addition node) {
-        node.leftSide().accept(this);
-        node.rightSide().accept(this);
         Type type = tc.getType(node);
-        if ( type.equivalent(new IntType()) || type.equivalent(new BoolType())) {
+        if ( type.equivalent(TypeTable.INT) || type.equivalent(TypeTable.BOOL)) {
             pop('i', "$t1", "$t0");
         program.appendInstruction("add $t2, $t0, $t1");
         program.pushInt("$t2");
-        } else if (type.equivalent(new FloatType())) {
+        } else if (type.equivalent(TypeTable.FLOAT)) {
             pop('f', "$f2", "$f0");
             program.appendInstruction("add.s $f4, $f0, $f2");
             program.pushFloat("$f4");
@@ -173,15 +207,13 @@ public class CodeGen implements ast.CommandVisitor {
     @Override
     public void visit(Subtraction node) {
       
-        node.leftSide().accept(this);
-        node.rightSide().accept(this);
         Type type = tc.getType(node);
-        if (type.equivalent(new FloatType())) {
+        if (type.equivalent(TypeTable.FLOAT)) {
             pop('f', "$f2", "$f0");
             program.appendInstruction("sub.s $f4, $f0, $f2");
 
             program.pushFloat("$f4");
-        } else if ( type.equivalent(new IntType()) || type.equivalent(new BoolType())) {
+        } else if ( type.equivalent(TypeTable.INT) || type.equivalent(TypeTable.BOOL)) {
             pop('i',"$t1","$t0");
             program.appendInstruction("sub $t3, $t0, $t1");
 
@@ -195,16 +227,14 @@ public class CodeGen implements ast.CommandVisitor {
     public void visit(Multiplication node) {
 
 
-        node.leftSide().accept(this);
-        node.rightSide().accept(this);
         Type type = tc.getType(node);
         
-        if (type.equivalent(new FloatType())) {
+        if (type.equivalent(TypeTable.FLOAT)) {
             pop('f',"$f2","$f0");
             program.appendInstruction("mul.s $f4, $f0, $f2");
 
             program.pushFloat("$f4");
-        } else if ( type.equivalent(new IntType()) || type.equivalent(new BoolType())) {
+        } else if ( type.equivalent(TypeTable.INT) || type.equivalent(TypeTable.BOOL)) {
             pop('i', "$t1", "$t0");
                     program.appendInstruction("mul $t3, $t0, $t1");
 
@@ -217,17 +247,15 @@ public class CodeGen implements ast.CommandVisitor {
     public void visit(Division node) {
 
 
-        node.leftSide().accept(this);
 
-        node.rightSide().accept(this);
         Type type = tc.getType(node);
-        if (type.equivalent(new FloatType())) {
+        if (type.equivalent(TypeTable.FLOAT)) {
             pop('f', "$f2", "$f0");
             program.appendInstruction("div.s $f4, $f0, $f2");
 
             program.pushFloat("$f4");
 
-        } else if (type.equivalent(new IntType()) || type.equivalent(new BoolType())) {
+        } else if (type.equivalent(TypeTable.INT) || type.equivalent(TypeTable.BOOL)) {
             pop('i', "$t1", "$t0");
             program.appendInstruction("div $t3, $t0, $t1");
 
@@ -240,8 +268,6 @@ public class CodeGen implements ast.CommandVisitor {
     public void visit(LogicalAnd node) {
 
 
-        node.leftSide().accept(this);
-        node.rightSide().accept(this);
         pop('i',"$t1","$t0");
         program.appendInstruction("and $t2, $t0, $t1");
         program.pushInt("$t2");
@@ -252,8 +278,6 @@ public class CodeGen implements ast.CommandVisitor {
 
     public void visit(LogicalOr node) {
 
-        node.leftSide().accept(this);
-        node.rightSide().accept(this);
         pop('i', "$t1", "$t0");
         program.appendInstruction("or $t2, $t0, $t1");
         program.pushInt("$t2");
@@ -264,11 +288,9 @@ public class CodeGen implements ast.CommandVisitor {
     public void visit(LogicalNot node) {
 
 
-        String f = program.newLabel();
-        String p = program.newLabel();
-        node.expression().accept(this);
+        String[] fp = labels.pop();
 
-       negate(f,p);
+       negate(fp[0],fp[1]);
 
     }
 
@@ -344,8 +366,6 @@ public void compare(Type t, ast.Comparison.Operation o) {
         program.pushInt("$t1");
     }
     public void visit(Comparison node) {
-        node.leftSide().accept(this);
-        node.rightSide().accept(this);
         Type type = tc.getType((Command) node.leftSide());
         compare(type,node.operation());
 
@@ -368,14 +388,13 @@ public void compare(Type t, ast.Comparison.Operation o) {
     @Override
     public void visit(Dereference node) {
 
-        node.expression().accept(this);
         program.popInt("$t0"); // Contains address to type ,/
         Type type = tc.getType(node);
 
-        if (type.equivalent(new FloatType())) {
+        if (type.equivalent(TypeTable.FLOAT)) {
             program.appendInstruction("lwc1 $f0, 0($t0)");
             program.pushFloat("$f0");
-        } else if (type.equivalent(new IntType()) || type.equivalent(new BoolType())) {
+        } else if (type.equivalent(TypeTable.INT) || type.equivalent(TypeTable.BOOL)) {
             program.appendInstruction("lw $t1, 0($t0)");
             program.pushInt("$t1");
         }
@@ -383,8 +402,6 @@ public void compare(Type t, ast.Comparison.Operation o) {
 
     @Override
     public void visit(Index node) {
-        node.base().accept(this);
-        node.amount().accept(this);
         pop('i',"$t0","$t1");
        Type type = tc.getType(node);
         program.appendInstruction("li $t2, " + ActivationRecord.getSize(type));
@@ -397,16 +414,14 @@ public void compare(Type t, ast.Comparison.Operation o) {
     public void visit(Assignment node) {
 
 
-        node.destination().accept(this);
-        node.source().accept(this);
         Type type = tc.getType(node);
-        if (type.equivalent(new FloatType())) {
+        if (type.equivalent(TypeTable.FLOAT)) {
 
             program.popFloat("$f0");
             program.popInt("$t0");
 
             program.appendInstruction("swc1 $f0, 0($t0)");
-        } else if (type.equivalent(new IntType()) || type.equivalent(new BoolType())){
+        } else if (type.equivalent(TypeTable.INT) || type.equivalent(TypeTable.BOOL)){
 
           pop('i',"$t0","$t1");
 
@@ -424,7 +439,6 @@ public void compare(Type t, ast.Comparison.Operation o) {
     }
 
     public void visit(Call node) {
-        node.arguments().accept(this);
         String funcName =  getPrefix(node.function().name());
         program.appendInstruction("jal " + funcName);
         if (node.arguments().size() > 0) {
@@ -434,7 +448,7 @@ public void compare(Type t, ast.Comparison.Operation o) {
 
             program.appendInstruction("addi $sp, $sp, " + a);
         }
-        if (!( (FuncType) node.function().type()).returnType().equivalent(new VoidType())) {
+        if (!( (FuncType) node.function().type()).returnType().equivalent(TypeTable.VOID)) {
             program.appendInstruction("subu $sp, $sp, 4");
             program.appendInstruction("sw $v0, 0($sp)");
         }
@@ -444,17 +458,7 @@ public void compare(Type t, ast.Comparison.Operation o) {
     @Override
     public void visit(IfElseBranch node) {
 
-        String e = program.newLabel();
-        String j = program.newLabel();
-        node.condition().accept(this);
-        program.popInt("$t7");
-        program.appendInstruction("beqz $t7, " + e);
-        node.thenBlock().accept(this);
-        program.appendInstruction("b " + j);
-
-
-        program.appendInstruction(e + ":");
-        node.elseBlock().accept(this);
+        String j = labels.pop()[1];
 
 
         program.appendInstruction(j + ":");
@@ -464,18 +468,9 @@ public void compare(Type t, ast.Comparison.Operation o) {
     @Override
     public void visit(WhileLoop node) {
 
-        String c = program.newLabel();
-        String j = program.newLabel();
-
-
-
-        program.appendInstruction(c + ":");
-        node.condition().accept(this);
-
-
-        program.popInt("$t7");
-        program.appendInstruction("beqz $t7, " + j);
-        node.body().accept(this);
+        String[] cj = labels.pop();
+        String c = cj[0];
+        String j = cj[1];
         program.appendInstruction("b " + c);
         program.appendInstruction(j + ":");
 
@@ -484,7 +479,6 @@ public void compare(Type t, ast.Comparison.Operation o) {
     @Override
     public void visit(Return node) {
 
-        node.argument().accept(this);
 
 
         program.appendInstruction("b " + rLab);
@@ -492,9 +486,9 @@ public void compare(Type t, ast.Comparison.Operation o) {
 
     @Override
     public void visit(ast.Error node) {
-        String message = "CodeGen cannot compile a " + node;
-        errorBuffer.append(message);
-        throw new CodeGenException(message);
+        crux.Diagnostic error = diagnostics.report(crux.Diagnostic.Code.CODE_GEN, node.lineNumber(), node.charPosition(),
+                "CodeGen cannot compile a ", node);
+        throw new CodeGenException(error != null ? error.toString() : "CodeGen cannot compile a " + node);
     }
 
     @Override
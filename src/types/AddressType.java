@@ -2,9 +2,9 @@ package types;
 
 public class AddressType extends Type {
 	
-	private Type base;
+	private final Type base;
 	
-	public AddressType(Type base)
+	AddressType(Type base)
 	{
 		this.base = base;
 	}
@@ -23,9 +23,10 @@ public class AddressType extends Type {
 	@Override
 	public Type assign(Type that)
 	{
-		if (!base.equivalent(that))
+		// whole arrays are not assignable
+		if (base instanceof ArrayType || !base.equivalent(that))
 			return super.assign(that);
-		return new VoidType();
+		return TypeTable.VOID;
 	}
 	
 	@Override
@@ -33,7 +34,7 @@ public class AddressType extends Type {
 	{
 		if (!(base instanceof ArrayType))
 			return super.index(that);
-		return new AddressType(base.index(that));
+		return TypeTable.address(base.index(that));
 	}
 	
 	@Override
@@ -41,15 +42,21 @@ public class AddressType extends Type {
 	{
 		return "Address(" + base + ")";
 	}
-
+	
 	@Override
-	public boolean equivalent(Type that) {
-		if (that == null)
-			return false;
-		if (!(that instanceof AddressType))
+	public boolean equivalent(Type that)
+	{
+		if (this == that)
+			return true;
+		if (!holdsError() || !(that instanceof AddressType))
 			return false;
 		
-		AddressType aType = (AddressType)that;
-		return this.base.equivalent(aType.base);
+		return base.equivalent(((AddressType)that).base);
+	}
+	
+	@Override
+	boolean holdsError()
+	{
+		return base.holdsError();
 	}
 }
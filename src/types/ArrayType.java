@@ -2,10 +2,10 @@ package types;
 
 public class ArrayType extends Type {
 	
-	private Type base;
-	private int extent;
+	private final Type base;
+	private final int extent;
 	
-	public ArrayType(int extent, Type base)
+	ArrayType(int extent, Type base)
 	{
 		this.extent = extent;
 		this.base = base;
@@ -37,12 +37,18 @@ public class ArrayType extends Type {
 	@Override
 	public boolean equivalent(Type that)
 	{
-		if (that == null)
-			return false;
-		if (!(that instanceof IntType))
+		if (this == that)
+			return true;
+		if (!holdsError() || !(that instanceof ArrayType))
 			return false;
 		
 		ArrayType aType = (ArrayType)that;
 		return this.extent == aType.extent && base.equivalent(aType.base);
 	}
+	
+	@Override
+	boolean holdsError()
+	{
+		return base.holdsError();
+	}
 }
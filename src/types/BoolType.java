@@ -2,7 +2,7 @@ package types;
 
 public class BoolType extends Type {
 	
-	public BoolType()
+	BoolType()
 	{
 	}
 	
@@ -17,7 +17,7 @@ public class BoolType extends Type {
 	{
 		if (!(that instanceof BoolType))
 			return super.and(that);
-		return new BoolType();
+		return TypeTable.BOOL;
 	}
 	
 	@Override
@@ -25,23 +25,12 @@ public class BoolType extends Type {
 	{
 		if (!(that instanceof BoolType))
 			return super.or(that);
-		return new BoolType();
+		return TypeTable.BOOL;
 	}
 	
 	@Override
 	public Type not()
 	{
-		return new BoolType();
+		return TypeTable.BOOL;
 	}
-	
-	@Override
-	public boolean equivalent(Type that)
-	{
-		if (that == null)
-			return false;
-		if (!(that instanceof BoolType))
-			return false;
-		
-		return true;
-	}
-}	
\ No newline at end of file
+}
@@ -2,7 +2,7 @@ package types;
 
 public class ErrorType extends Type {
 	
-	private String message;
+	private final String message;
 	
 	public ErrorType(String message)
 	{
@@ -20,14 +20,19 @@ public class ErrorType extends Type {
 		return "ErrorType(" + message + ")";
 	}
 	
+	// errors are not canonical; they are equivalent when they say the same
 	@Override
 	public boolean equivalent(Type that)
 	{
-		if (that == null)
-			return false;
 		if (!(that instanceof ErrorType))
 			return false;
 		
 		return message.equals(((ErrorType)that).message);
 	}
+	
+	@Override
+	boolean holdsError()
+	{
+		return true;
+	}
 }
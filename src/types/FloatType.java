@@ -2,7 +2,7 @@ package types;
 
 public class FloatType extends Type {
 	
-	public FloatType()
+	FloatType()
 	{
 	}
 	
@@ -17,7 +17,7 @@ public class FloatType extends Type {
 	{
 		if (!(that instanceof FloatType))
 			return super.add(that);
-		return new FloatType();
+		return TypeTable.FLOAT;
 	}
 	
 	@Override
@@ -25,7 +25,7 @@ public class FloatType extends Type {
 	{
 		if (!(that instanceof FloatType))
 			return super.sub(that);
-		return new FloatType();
+		return TypeTable.FLOAT;
 	}
 	
 	@Override
@@ -33,7 +33,7 @@ public class FloatType extends Type {
 	{
 		if (!(that instanceof FloatType))
 			return super.mul(that);
-		return new FloatType();
+		return TypeTable.FLOAT;
 	}
 	
 	@Override
@@ -41,7 +41,7 @@ public class FloatType extends Type {
 	{
 		if (!(that instanceof FloatType))
 			return super.div(that);
-		return new FloatType();
+		return TypeTable.FLOAT;
 	}
 		
 	@Override
@@ -49,16 +49,6 @@ public class FloatType extends Type {
 	{
 		if (!(that instanceof FloatType))
 			return super.compare(that);
-		return new BoolType();
-	}
-	
-	@Override
-	public boolean equivalent(Type that)
-	{
-		if (that == null)
-			return false;
-		if (!(that instanceof FloatType))
-			return false;
-		return true;
+		return TypeTable.BOOL;
 	}
 }
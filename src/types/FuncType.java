@@ -2,10 +2,10 @@ package types;
 
 public class FuncType extends Type {
    
-   private TypeList args;
-   private Type ret;
+   private final TypeList args;
+   private final Type ret;
    
-   public FuncType(TypeList args, Type returnType)
+   FuncType(TypeList args, Type returnType)
    {
       this.args = args;
       this.ret = returnType;
@@ -38,12 +38,18 @@ public class FuncType extends Type {
    @Override
    public boolean equivalent(Type that)
    {
-      if (that == null)
-         return false;
-      if (!(that instanceof FuncType))
+      if (this == that)
+         return true;
+      if (!holdsError() || !(that instanceof FuncType))
          return false;
       
       FuncType aType = (FuncType)that;
       return this.ret.equivalent(aType.ret) && this.args.equivalent(aType.args);
    }
+
+   @Override
+   boolean holdsError()
+   {
+      return args.holdsError() || ret.holdsError();
+   }
 }
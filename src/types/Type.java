@@ -1,13 +1,19 @@
 package types;
 
+import java.util.HashMap;
+
 public abstract class Type {
 	
+	// the types built on this one, guarded by TypeTable
+	AddressType address;
+	HashMap<Integer, ArrayType> arrays;
+	
 	public static Type getBaseType(String typeStr)
 	{
-		if (typeStr.equals("int")) return new IntType();
-		if (typeStr.equals("float")) return new FloatType();
-		if (typeStr.equals("bool")) return new BoolType();
-		if (typeStr.equals("void")) return new VoidType();
+		if (typeStr.equals("int")) return TypeTable.INT;
+		if (typeStr.equals("float")) return TypeTable.FLOAT;
+		if (typeStr.equals("bool")) return TypeTable.BOOL;
+		if (typeStr.equals("void")) return TypeTable.VOID;
 		return new ErrorType("Unkown type: " + typeStr);
 	}
 	
@@ -71,6 +77,17 @@ public abstract class Type {
 		return new ErrorType("Cannot assign " + source + " to " + this + ".");
 	}
 	
-	// Perform a structural equivalence test
-	abstract public boolean equivalent(Type that);
+	// Perform a structural equivalence test; types are canonical (see
+	// TypeTable), so equivalent types are the same object, bar those holding
+	// an ErrorType, which compare by structure
+	public boolean equivalent(Type that)
+	{
+		return this == that;
+	}
+	
+	// whether this is or is built from an ErrorType
+	boolean holdsError()
+	{
+		return false;
+	}
 }
@@ -1,19 +1,24 @@
 package types;
 
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Stack;
 
 import ast.*;
 
-public class TypeChecker implements CommandVisitor {
+// Types a tree by a Walk; each visit method types a node whose children are
+// typed already.
+public class TypeChecker implements WalkVisitor {
     
     private HashMap<Command, Type> typeMap = new HashMap<Command, Type>();
-    private StringBuffer errorBuffer = new StringBuffer();
+    private crux.Diagnostics diagnostics = new crux.Diagnostics();
     private crux.Symbol currentFunction = crux.Symbol.newError("FunctionReturnType not set.");
+    private Stack<crux.Symbol> enclosingFunctions = new Stack<crux.Symbol>();
+    private HashSet<Command> allPathsReturn = new HashSet<Command>(); // statements and blocks that always return
 
     private void reportError(int lineNum, int charPos, String message)
     {
-        errorBuffer.append("TypeError(" + lineNum + "," + charPos + ")");
-        errorBuffer.append("[" + message + "]" + "\n");
+        diagnostics.report(crux.Diagnostic.Code.TYPE, lineNum, charPos, message);
     }
         
     private Type currentReturnType()
@@ -45,7 +50,7 @@ public class TypeChecker implements CommandVisitor {
         if (!func.name().equals("main"))
             return;
             
-        Type sig = new FuncType(new TypeList(), new VoidType());
+        Type sig = TypeTable.func(TypeTable.EMPTY_LIST, TypeTable.VOID);
         if (sig.equivalent(func.type()))
             return;
             
@@ -53,25 +58,6 @@ public class TypeChecker implements CommandVisitor {
             "Function main has invalid signature.");
     }
     
-    private boolean allPathsReturn(Command node)
-    {
-        if (node instanceof Return)
-            return true;
-        if (node instanceof StatementList) {
-            boolean result = false;
-            StatementList list = (StatementList)node;
-            for (Statement s : list)
-                result = result || allPathsReturn((Command)s);
-            return result;
-        }
-        if (node instanceof IfElseBranch) {
-            IfElseBranch branch = (IfElseBranch)node;
-            return allPathsReturn(branch.thenBlock()) && allPathsReturn(branch.elseBlock());
-        }
-        
-        return false;
-    }
-    
     private void put(Command node, Type type)
     {
         if (type instanceof ErrorType) {
@@ -88,72 +74,93 @@ public class TypeChecker implements CommandVisitor {
     
     public boolean check(Command ast)
     {
-        ast.accept(this);
+        Walk.walk(ast, this);
         return !hasError();
     }
     
     public boolean hasError()
     {
-        return errorBuffer.length() != 0;
+        return diagnostics.hasError();
     }
     
     public String errorReport()
     {
-        return errorBuffer.toString();
+        return diagnostics.report();
+    }
+    
+    public crux.Diagnostics diagnostics()
+    {
+        return diagnostics;
+    }
+
+    @Override
+    public void enter(Command node) {
+        if (node instanceof FunctionDefinition)
+            enter((FunctionDefinition)node);
+    }
+
+    private void enter(FunctionDefinition node) {
+        put(node, TypeTable.VOID);
+        enclosingFunctions.push(currentFunction);
+        currentFunction = node.symbol();
+        checkForBadArgument(node);
+        checkMainSignature(node);
+    }
+
+    @Override
+    public void after(Command parent, Command child) {
     }
 
     @Override
     public void visit(ExpressionList node) {
-        TypeList tlist = new TypeList();
-        for (Expression e : node) {
-            e.accept(this);
-            tlist.append(typeMap.get(e));
-        }
+        TypeList tlist = TypeTable.EMPTY_LIST;
+        for (Expression e : node)
+            tlist = TypeTable.append(tlist, typeMap.get(e));
         put(node, tlist);
     }
 
     @Override
     public void visit(DeclarationList node) {
-        for (Declaration d : node)
-            d.accept(this);
     }
 
     @Override
     public void visit(StatementList node) {
-        for (Statement s : node)
-            s.accept(this);
+        for (Statement s : node) {
+            if (allPathsReturn.contains(s))
+                allPathsReturn.add(node);
+        }
     }
 
     @Override
     public void visit(AddressOf node) {
-        put(node, new AddressType(node.symbol().type()));
+        put(node, TypeTable.address(node.symbol().type()));
     }
 
     @Override
     public void visit(LiteralBool node) {
-        put(node, new BoolType());
+        put(node, TypeTable.BOOL);
     }
 
     @Override
     public void visit(LiteralFloat node) {
-        put(node, new FloatType());
+        put(node, TypeTable.FLOAT);
     }
 
     @Override
     public void visit(LiteralInt node) {
-        put(node, new IntType());
+        put(node, TypeTable.INT);
     }
 
     @Override
     public void visit(VariableDeclaration node) {
         Type t = node.symbol().type();
 
-        if (t.equivalent(new BoolType()))
-          put(node, new VoidType());
-        else if (t.equivalent(new IntType()))
-          put(node, new VoidType());
-        else if (t.equivalent(new FloatType()))
-          put(node, new VoidType());
+        if (t.equivalent(TypeTable.BOOL))
+          put(node, TypeTable.VOID);
+        else if (t.equivalent(TypeTable.INT))
+          put(node, TypeTable.VOID);
+        else if (t.equivalent(TypeTable.FLOAT))
+          put(node, TypeTable.VOID);
         else
           reportError(node.lineNumber(), node.charPosition(),
             "Variable " + node.symbol().name() + " has invalid type " + t + ".");
@@ -166,133 +173,105 @@ public class TypeChecker implements CommandVisitor {
         while (t instanceof ArrayType)
            t = ((ArrayType)t).base();
         
-        if (t.equivalent(new BoolType()))
-          put(node, new VoidType());
-        else if (t.equivalent(new IntType()))
-          put(node, new VoidType());
-        else if (t.equivalent(new FloatType()))
-          put(node, new VoidType());
+        if (t.equivalent(TypeTable.BOOL))
+          put(node, TypeTable.VOID);
+        else if (t.equivalent(TypeTable.INT))
+          put(node, TypeTable.VOID);
+        else if (t.equivalent(TypeTable.FLOAT))
+          put(node, TypeTable.VOID);
         else
           reportError(node.lineNumber(), node.charPosition(),
             "Array " + node.symbol().name() + " has invalid base type " + t + ".");
 
-        put(node, new VoidType());
+        put(node, TypeTable.VOID);
     }
 
     @Override
     public void visit(FunctionDefinition node) {
-        put(node, new VoidType());
-        crux.Symbol rememberFunction = currentFunction;
-        currentFunction = node.symbol();
-        checkForBadArgument(node);
-        checkMainSignature(node);
-
-        node.body().accept(this);
-        if (!(currentReturnType() instanceof VoidType) && !allPathsReturn(node.body())) {
+        if (!(currentReturnType() instanceof VoidType) && !allPathsReturn.contains(node.body())) {
             reportError(node.lineNumber(), node.charPosition(),
                 "Not all paths in function " + currentFunction.name() + " have a return.");
         }
-        currentFunction = rememberFunction;
+        currentFunction = enclosingFunctions.pop();
     }
 
     @Override
     public void visit(Comparison node) {
-        node.leftSide().accept(this);
         Type leftType = typeMap.get(node.leftSide());
-        node.rightSide().accept(this);
         Type rightType = typeMap.get(node.rightSide());
         put(node, leftType.compare(rightType));
     }
     
     @Override
     public void visit(Addition node) {
-        node.leftSide().accept(this);
         Type leftType = typeMap.get(node.leftSide());
-        node.rightSide().accept(this);
         Type rightType = typeMap.get(node.rightSide());
         put(node, leftType.add(rightType));
     }
     
     @Override
     public void visit(Subtraction node) {
-        node.leftSide().accept(this);
         Type leftType = typeMap.get(node.leftSide());
-        node.rightSide().accept(this);
         Type rightType = typeMap.get(node.rightSide());
         put(node, leftType.sub(rightType));
     }
     
     @Override
     public void visit(Multiplication node) {
-        node.leftSide().accept(this);
         Type leftType = typeMap.get(node.leftSide());
-        node.rightSide().accept(this);
         Type rightType = typeMap.get(node.rightSide());
         put(node, leftType.mul(rightType));
     }
     
     @Override
     public void visit(Division node) {
-        node.leftSide().accept(this);
         Type leftType = typeMap.get(node.leftSide());
-        node.rightSide().accept(this);
         Type rightType = typeMap.get(node.rightSide());
         put(node, leftType.div(rightType));
     }
     
     @Override
     public void visit(LogicalAnd node) {
-        node.leftSide().accept(this);
         Type leftType = typeMap.get(node.leftSide());
-        node.rightSide().accept(this);
         Type rightType = typeMap.get(node.rightSide());
         put(node, leftType.and(rightType));
     }
 
     @Override
     public void visit(LogicalOr node) {
-        node.leftSide().accept(this);
         Type leftType = typeMap.get(node.leftSide());
-        node.rightSide().accept(this);
         Type rightType = typeMap.get(node.rightSide());
         put(node, leftType.or(rightType));
     }
 
     @Override
     public void visit(LogicalNot node) {
-        node.expression().accept(this);
         Type exprType = typeMap.get(node.expression());
         put(node, exprType.not());
     }
     
     @Override
     public void visit(Dereference node) {
-        node.expression().accept(this);
         Type exprType = typeMap.get(node.expression());
         put(node, exprType.deref());
     }
 
     @Override
     public void visit(Index node) {
-        node.base().accept(this);
         Type baseType = typeMap.get(node.base());
-        node.amount().accept(this);
         Type amountType = typeMap.get(node.amount());
         put(node,  baseType.index(amountType));
     }
 
     @Override
     public void visit(Assignment node) {
-        node.destination().accept(this);
         Type destType = typeMap.get(node.destination());
-        node.source().accept(this);
         Type srcType = typeMap.get(node.source());
         put(node, destType.assign(srcType));
     }
 
     @Override
     public void visit(Call node) {
-        node.arguments().accept(this);
         Type args = typeMap.get(node.arguments());
         put(node, node.function().type().call(args));
     }
@@ -300,38 +279,35 @@ public class TypeChecker implements CommandVisitor {
     @Override
     public void visit(IfElseBranch node) {
         assert(false);
-        node.condition().accept(this);
         Type condType = typeMap.get(node.condition());
-        node.thenBlock().accept(this);
-        node.elseBlock().accept(this);
         
         if (!(condType instanceof BoolType))
             put(node, new ErrorType("IfElseBranch requires bool condition not " + condType + "."));
         else
-            put(node, new VoidType());
+            put(node, TypeTable.VOID);
+        if (allPathsReturn.contains(node.thenBlock()) && allPathsReturn.contains(node.elseBlock()))
+            allPathsReturn.add(node);
     }
 
     @Override
     public void visit(WhileLoop node) {
-        node.condition().accept(this);
         Type condType = typeMap.get(node.condition());
-        node.body().accept(this);
         
         if (!(condType instanceof BoolType))
             put(node, new ErrorType("WhileLoop requires bool condition not " + condType + "."));
         else
-            put(node, new VoidType());    
+            put(node, TypeTable.VOID);    
     }
 
     @Override
     public void visit(Return node) {
-        node.argument().accept(this);
         Type retType = typeMap.get(node.argument());
         
         if (!retType.equivalent(currentReturnType()))
             put(node, new ErrorType("Function " + currentFunction.name() + " returns " + currentReturnType() + " not " + retType + "."));
         else
-            put(node, new VoidType());
+            put(node, TypeTable.VOID);
+        allPathsReturn.add(node);
     }
 
     @Override
@@ -1,21 +1,33 @@
 package types;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 
 public class TypeList extends Type implements Iterable<Type> {
 	
-	private List<Type> list;
+	private final List<Type> list;
+	private final boolean holdsError;
 	
-	public TypeList()
+	// the lists one longer, guarded by TypeTable, as are the functions
+	// taking this list
+	HashMap<Type, TypeList> longer;
+	HashMap<Type, FuncType> functions;
+	
+	TypeList()
 	{
-		list = new ArrayList<Type>();
+		list = Collections.emptyList();
+		holdsError = false;
 	}
 	
-	public void append(Type type)
+	TypeList(TypeList prefix, Type last)
 	{
-		list.add(type);
+		List<Type> types = new ArrayList<Type>(prefix.list);
+		types.add(last);
+		list = Collections.unmodifiableList(types);
+		holdsError = prefix.holdsError || last.holdsError();
 	}
 	
 	@Override
@@ -31,11 +43,11 @@ public class TypeList extends Type implements Iterable<Type> {
 		return sb.toString();
 	}
 	
-    @Override
+	@Override
 	public boolean equivalent(Type that) {
-		if (that == null)
-			return false;
-		if (!(that instanceof TypeList))
+		if (this == that)
+			return true;
+		if (!holdsError || !(that instanceof TypeList))
 			return false;
 		
 		List<Type> olist = ((TypeList)that).list;
@@ -50,6 +62,12 @@ public class TypeList extends Type implements Iterable<Type> {
 		}
 		return true;
 	}
+	
+	@Override
+	boolean holdsError()
+	{
+		return holdsError;
+	}
     
     @Override
     public Iterator<Type> iterator()
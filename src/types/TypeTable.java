@@ -0,0 +1,80 @@
+package types;
+
+import java.util.HashMap;
+
+/* Hands out one canonical instance of each type, shared by the whole
+ * compilation. The primitive types are singletons, and an array, address,
+ * function or list type is built once from the canonical types it is made of,
+ * then found again on each later request. So two types are structurally
+ * equivalent exactly when they are the same object, and typing a tree
+ * allocates no types once the ones it uses exist.
+ *
+ * Each composite type is cached on the type it is built from: an address on
+ * its base, an array on its base by extent, a list on the list one shorter,
+ * and a function on its argument list by return type. The parser declares
+ * types from several threads at once, so all that goes under one lock.
+ */
+public final class TypeTable {
+
+	public static final IntType INT = new IntType();
+	public static final FloatType FLOAT = new FloatType();
+	public static final BoolType BOOL = new BoolType();
+	public static final VoidType VOID = new VoidType();
+	public static final TypeList EMPTY_LIST = new TypeList();
+
+	private TypeTable()
+	{
+	}
+
+	public static synchronized AddressType address(Type base)
+	{
+		if (base.holdsError())
+			return new AddressType(base);
+		if (base.address == null)
+			base.address = new AddressType(base);
+		return base.address;
+	}
+
+	public static synchronized ArrayType array(int extent, Type base)
+	{
+		if (base.holdsError())
+			return new ArrayType(extent, base);
+		if (base.arrays == null)
+			base.arrays = new HashMap<Integer, ArrayType>();
+		ArrayType type = base.arrays.get(extent);
+		if (type == null) {
+			type = new ArrayType(extent, base);
+			base.arrays.put(extent, type);
+		}
+		return type;
+	}
+
+	// list followed by type
+	public static synchronized TypeList append(TypeList list, Type type)
+	{
+		if (list.holdsError() || type.holdsError())
+			return new TypeList(list, type);
+		if (list.longer == null)
+			list.longer = new HashMap<Type, TypeList>();
+		TypeList longer = list.longer.get(type);
+		if (longer == null) {
+			longer = new TypeList(list, type);
+			list.longer.put(type, longer);
+		}
+		return longer;
+	}
+
+	public static synchronized FuncType func(TypeList args, Type returnType)
+	{
+		if (args.holdsError() || returnType.holdsError())
+			return new FuncType(args, returnType);
+		if (args.functions == null)
+			args.functions = new HashMap<Type, FuncType>();
+		FuncType type = args.functions.get(returnType);
+		if (type == null) {
+			type = new FuncType(args, returnType);
+			args.functions.put(returnType, type);
+		}
+		return type;
+	}
+}
@@ -2,7 +2,7 @@ package types;
 
 public class VoidType extends Type {
 	
-	public VoidType()
+	VoidType()
 	{
 	}
 	
@@ -11,14 +11,4 @@ public class VoidType extends Type {
 	{
 		return "void";
 	}
-	
-	@Override
-	public boolean equivalent(Type that)
-	{
-		if (that == null)
-			return false;
-		if (!(that instanceof VoidType))
-			return false;
-		return true;
-	}
 }
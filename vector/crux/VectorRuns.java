@@ -0,0 +1,55 @@
+package crux;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/* CharRuns over jdk.incubator.vector, classifying 8 to 32 characters at once,
+ * as many as the platform's preferred vector holds. It is kept out of src, as
+ * it needs JDK 16 or later and the incubator module to compile:
+ *
+ *   javac --add-modules jdk.incubator.vector -cp out -d out vector/crux/VectorRuns.java
+ *   java --add-modules jdk.incubator.vector -cp out ...
+ *
+ * Without the class or the module, CharRuns falls back to the Scanner's scalar
+ * loop. The classes match Scanner.CLASSES for ASCII, less '\n'.
+ */
+final class VectorRuns extends CharRuns {
+
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    @Override
+    int skip(char[] window, int from, int to, int charClass) {
+        // most runs end at once, between tokens, and a load would only cost
+        if (from == to || !Scanner.is(window[from], charClass))
+            return from;
+        int i = from;
+        int last = to - SPECIES.length();
+        while (i <= last) {
+            ShortVector v = ShortVector.fromCharArray(SPECIES, window, i);
+            VectorMask<Short> outside = classify(v, charClass).not();
+            if (outside.anyTrue())
+                return i + outside.firstTrue();
+            i += SPECIES.length();
+        }
+        return i; // the Scanner takes the tail
+    }
+
+    // The lanes of v holding ASCII characters of charClass other than '\n'.
+    private static VectorMask<Short> classify(ShortVector v, int charClass) {
+        VectorMask<Short> digit = within(v, '0', '9');
+        if (charClass == Scanner.DIGIT)
+            return digit;
+        if (charClass == Scanner.IDENTIFIER)
+            return digit.or(within(v.or((short) 0x20), 'a', 'z')).or(v.eq((short) '_'));
+        // \t \u000B \f \r, the separators \u001C to \u001F, and ' '
+        return within(v, '\t', '\r').andNot(v.eq((short) '\n'))
+                .or(within(v, '\u001C', ' '));
+    }
+
+    // The lanes of v from low to high, comparing as chars.
+    private static VectorMask<Short> within(ShortVector v, char low, char high) {
+        return v.sub((short) low).compare(VectorOperators.UNSIGNED_LE, (short) (high - low));
+    }
+}